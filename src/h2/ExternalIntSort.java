@@ -0,0 +1,272 @@
+package h2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * External sort of binary files of int values that do not fit into memory.
+ * The input is read through memory-mapped chunks, each chunk is radix sorted
+ * in memory and spilled to a temporary run file, and the runs are merged with
+ * a heap into the output file. When the memory limit does not allow a buffer of
+ * MIN_BLOCK bytes for every run, groups of runs are first merged into longer
+ * intermediate runs, so the buffers and open files stay within bounds.
+ *
+ * @since 1.8
+ */
+public class ExternalIntSort {
+
+    /**
+     * default memory limit in bytes
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 64L << 20;
+
+    /**
+     * smallest buffer of one run during the merge, in bytes
+     */
+    static final int MIN_BLOCK = 4096;
+
+    /**
+     * largest buffer of one run during the merge, in bytes
+     */
+    static final int MAX_BLOCK = 1 << 20;
+
+    /**
+     * largest number of run files merged (and open) at once
+     */
+    static final int MAX_MERGE_WAYS = 256;
+
+    private final long memoryLimit;
+    private final Path tempDir;
+    private final ByteOrder order;
+
+    /**
+     * External sort with the default memory limit, the default temporary
+     * directory and big-endian values.
+     */
+    public ExternalIntSort() {
+        this(DEFAULT_MEMORY_LIMIT, null, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * External sort with the given settings.
+     *
+     * @param memoryLimit bytes of heap used at a time: the keys and the radix
+     *                    sort buffer of one run, its write buffer, or the
+     *                    buffers of one merge
+     * @param tempDir     directory of the run files, null for the default
+     *                    temporary directory
+     * @param order       byte order of the values in the files
+     */
+    public ExternalIntSort(long memoryLimit, Path tempDir, ByteOrder order) {
+        if (memoryLimit < 2 * MIN_BLOCK || order == null)
+            throw new IllegalArgumentException("ExternalIntSort: wrong parameters");
+        this.memoryLimit = memoryLimit;
+        this.tempDir = tempDir;
+        this.order = order;
+    }
+
+    /**
+     * Sort the int values of the input file into the output file.
+     *
+     * @param input  file of int values
+     * @param output file to be written
+     * @throws IOException if reading or writing fails or the input length is
+     *                     not a multiple of 4
+     */
+    public void sort(Path input, Path output) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        try {
+            try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+                long size = in.size();
+                if (size % Integer.BYTES != 0)
+                    throw new IOException("Input length " + size + " is not a multiple of 4: " + input);
+                long runBytes = Math.min(memoryLimit / 2, Integer.MAX_VALUE) / Integer.BYTES * Integer.BYTES;
+                if (size <= runBytes) {
+                    writeRun(sortChunk(in, 0, size), output);
+                    return;
+                }
+                for (long pos = 0; pos < size; pos += runBytes) {
+                    int[] run = sortChunk(in, pos, Math.min(runBytes, size - pos));
+                    Path file = createRunFile();
+                    runs.add(file);
+                    writeRun(run, file);
+                }
+            }
+            merge(new ArrayList<>(runs), output, runs);
+        } finally {
+            for (Path file : runs) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * New temporary run file.
+     */
+    private Path createRunFile() throws IOException {
+        return tempDir == null
+                ? Files.createTempFile("intsort", ".run")
+                : Files.createTempFile(tempDir, "intsort", ".run");
+    }
+
+    /**
+     * Number of runs merged at once: every run and the output get a buffer of
+     * at least MIN_BLOCK bytes within the memory limit, but at least two runs
+     * are merged.
+     */
+    int mergeWays() {
+        return (int) Math.max(2, Math.min(MAX_MERGE_WAYS, memoryLimit / MIN_BLOCK - 1));
+    }
+
+    /**
+     * Read and radix sort one chunk of the input.
+     */
+    private int[] sortChunk(FileChannel in, long pos, long bytes) throws IOException {
+        MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, pos, bytes);
+        int[] run = new int[(int) (bytes / Integer.BYTES)];
+        mapped.order(order).asIntBuffer().get(run);
+        IntSorting.radixSort(run);
+        return run;
+    }
+
+    /**
+     * Write the values to the file.
+     */
+    private void writeRun(int[] run, Path file) throws IOException {
+        int block = (int) Math.min(MAX_BLOCK, memoryLimit / 2) / Integer.BYTES * Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(block).order(order);
+        IntBuffer ints = buffer.asIntBuffer();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (int from = 0; from < run.length; ) {
+                int count = Math.min(ints.capacity(), run.length - from);
+                ints.clear();
+                ints.put(run, from, count);
+                buffer.clear().limit(count * Integer.BYTES);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                from += count;
+            }
+        }
+    }
+
+    /**
+     * Merge the sorted run files into the output file, in several passes if
+     * there are more than mergeWays() runs. Intermediate runs are added to
+     * created, so that they are deleted in any case; merged runs are deleted at
+     * once.
+     */
+    private void merge(List<Path> runs, Path output, List<Path> created) throws IOException {
+        int ways = mergeWays();
+        while (runs.size() > ways) {
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += ways) {
+                List<Path> group = runs.subList(from, Math.min(from + ways, runs.size()));
+                if (group.size() == 1) {
+                    merged.add(group.get(0));
+                    continue;
+                }
+                Path file = createRunFile();
+                created.add(file);
+                merged.add(file);
+                mergeGroup(group, file);
+                for (Path run : group) {
+                    Files.deleteIfExists(run);
+                }
+            }
+            runs = merged;
+        }
+        mergeGroup(runs, output);
+    }
+
+    /**
+     * Merge at most mergeWays() sorted run files into the output file.
+     */
+    private void mergeGroup(List<Path> runs, Path output) throws IOException {
+        int block = (int) Math.min(MAX_BLOCK, memoryLimit / (runs.size() + 1));
+        block = block / Integer.BYTES * Integer.BYTES;
+        PriorityQueue<RunReader> heap = new PriorityQueue<>(runs.size(),
+                (x, y) -> Integer.compare(x.head, y.head));
+        List<RunReader> readers = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(FileChannel.open(run, StandardOpenOption.READ), block, order);
+                readers.add(reader);
+                if (reader.advance())
+                    heap.add(reader);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(block).order(order);
+            while (!heap.isEmpty()) {
+                RunReader reader = heap.poll();
+                buffer.putInt(reader.head);
+                if (!buffer.hasRemaining())
+                    flush(buffer, out);
+                if (reader.advance())
+                    heap.add(reader);
+            }
+            flush(buffer, out);
+        } finally {
+            for (RunReader reader : readers) {
+                reader.channel.close();
+            }
+        }
+    }
+
+    /**
+     * Write the contents of the buffer and clear it.
+     */
+    private static void flush(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Buffered sequential reader of one run file.
+     */
+    private static class RunReader {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private int head;
+
+        RunReader(FileChannel channel, int block, ByteOrder order) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(block).order(order);
+            this.buffer.limit(0);
+        }
+
+        /**
+         * Read the next value into head.
+         *
+         * @return false if the run is exhausted
+         */
+        boolean advance() throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                buffer.compact();
+                while (buffer.position() < Integer.BYTES) {
+                    if (channel.read(buffer) < 0)
+                        return false;
+                }
+                buffer.flip();
+            }
+            head = buffer.getInt();
+            return true;
+        }
+    }
+
+}
@@ -1,10 +1,17 @@
 package h2;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Comparison of sorting methods. The same array of non-negative int values is
- * used for all methods.
+ * used for all methods, the radix sorts accept the full signed int range.
  *
  * @author Jaanus
  * @version 3.0
@@ -18,71 +25,12 @@ public class IntSorting {
     static final int MAX_SIZE = 512000;
 
     /**
-     * number of competition rounds
-     */
-    static final int NUMBER_OF_ROUNDS = 4;
-
-    /**
-     * Main method.
+     * Main method: runs the benchmark of all sorting methods.
      *
-     * @param args command line parameters
+     * @param args command line parameters, see SortBenchmark
      */
     public static void main(String[] args) {
-        final int[] origArray = new int[MAX_SIZE];
-        Random generator = new Random();
-        for (int i = 0; i < MAX_SIZE; i++) {
-            origArray[i] = generator.nextInt(1000);
-        }
-        int rightLimit = MAX_SIZE / (int) Math.pow(2., NUMBER_OF_ROUNDS);
-
-        // Start a competition
-        for (int round = 0; round < NUMBER_OF_ROUNDS; round++) {
-            int[] acopy;
-            long stime, ftime, diff;
-            rightLimit = 2 * rightLimit;
-            System.out.println();
-            System.out.println("Length: " + rightLimit);
-
-            acopy = Arrays.copyOf(origArray, rightLimit);
-            stime = System.nanoTime();
-            insertionSort(acopy);
-            ftime = System.nanoTime();
-            diff = ftime - stime;
-            System.out.printf("%34s%11d%n", "Insertion sort: time (ms): ", diff / 1000000);
-            checkOrder(acopy);
-
-            acopy = Arrays.copyOf(origArray, rightLimit);
-            stime = System.nanoTime();
-            binaryInsertionSort(acopy);
-            ftime = System.nanoTime();
-            diff = ftime - stime;
-            System.out.printf("%34s%11d%n", "Binary insertion sort: time (ms): ", diff / 1000000);
-            checkOrder(acopy);
-
-            acopy = Arrays.copyOf(origArray, rightLimit);
-            stime = System.nanoTime();
-            quickSort(acopy, 0, acopy.length);
-            ftime = System.nanoTime();
-            diff = ftime - stime;
-            System.out.printf("%34s%11d%n", "Quicksort: time (ms): ", diff / 1000000);
-            checkOrder(acopy);
-
-            acopy = Arrays.copyOf(origArray, rightLimit);
-            stime = System.nanoTime();
-            Arrays.sort(acopy);
-            ftime = System.nanoTime();
-            diff = ftime - stime;
-            System.out.printf("%34s%11d%n", "Java API  Arrays.sort: time (ms): ", diff / 1000000);
-            checkOrder(acopy);
-
-            acopy = Arrays.copyOf(origArray, rightLimit);
-            stime = System.nanoTime();
-            radixSort(acopy);
-            ftime = System.nanoTime();
-            diff = ftime - stime;
-            System.out.printf("%34s%11d%n", "Radix sort: time (ms): ", diff / 1000000);
-            checkOrder(acopy);
-        }
+        SortBenchmark.main(args);
     }
 
     /**
@@ -93,15 +41,20 @@ public class IntSorting {
     public static void insertionSort(int[] a) {
         if (a.length < 2)
             return;
+        SortMetrics.Counters c = SortMetrics.ENABLED ? SortMetrics.counters() : null;
         for (int i = 1; i < a.length; i++) {
             int b = a[i];
             int j;
             for (j = i - 1; j >= 0; j--) {
+                if (SortMetrics.ENABLED)
+                    c.comparisons++;
                 if (a[j] <= b)
                     break;
                 a[j + 1] = a[j];
             }
             a[j + 1] = b;
+            if (SortMetrics.ENABLED)
+                c.moves += i - j;
         }
     }
 
@@ -112,15 +65,29 @@ public class IntSorting {
      */
 
     public static void binaryInsertionSort(int[] a) {
-            if (a.length < 2) return;
+            binaryInsertionSort(a, 0, a.length);
+        }
+
+    /**
+     * Binary insertion sort of a part of the array.
+     *
+     * @param a array to be changed
+     * @param l starting index (included)
+     * @param r ending index (excluded)
+     */
+    public static void binaryInsertionSort(int[] a, int l, int r) {
+            if (r - l < 2) return;
+            SortMetrics.Counters c = SortMetrics.ENABLED ? SortMetrics.counters() : null;
 
-            for (int i = 1; i < a.length; i++) {
+            for (int i = l + 1; i < r; i++) {
                 int b = a[i];
-                int left = 0;
+                int left = l;
                 int right = i - 1;
 
                 while (left <= right) {
                     int mid = left + (right - left) / 2;
+                    if (SortMetrics.ENABLED)
+                        c.comparisons++;
                     if (a[mid] > b) {
                         right = mid - 1;
                     } else {
@@ -133,6 +100,8 @@ public class IntSorting {
                 }
 
                 a[left] = b;
+                if (SortMetrics.ENABLED)
+                    c.moves += i - left + 1;
             }
         }
 
@@ -149,79 +118,2453 @@ public class IntSorting {
             throw new IllegalArgumentException("quickSort: wrong parameters");
         if ((r - l) < 2)
             return;
+        SortMetrics.Counters c = SortMetrics.ENABLED ? SortMetrics.counters() : null;
+        if (SortMetrics.ENABLED)
+            c.enter();
         int i = l;
         int j = r - 1;
         int x = array[(i + j) / 2];
         do {
-            while (array[i] < x)
+            while (array[i] < x) {
                 i++;
-            while (x < array[j])
+                if (SortMetrics.ENABLED)
+                    c.comparisons++;
+            }
+            while (x < array[j]) {
                 j--;
+                if (SortMetrics.ENABLED)
+                    c.comparisons++;
+            }
+            if (SortMetrics.ENABLED)
+                c.comparisons += 2;
             if (i <= j) {
                 int tmp = array[i];
                 array[i] = array[j];
                 array[j] = tmp;
                 i++;
                 j--;
+                if (SortMetrics.ENABLED)
+                    c.moves += 2;
             }
         } while (i < j);
         if (l < j)
             quickSort(array, l, j + 1); // recursion for left part
         if (i < r - 1)
             quickSort(array, i, r); // recursion for right part
+        if (SortMetrics.ENABLED)
+            c.exit();
     }
 
     /**
-     * frequency of the byte
+     * partitions up to this length are sorted by binary insertion sort
      */
-    public static int[] freq = new int[256];
+    static final int INSERTION_SORT_THRESHOLD = 24;
 
     /**
-     * number of positions
+     * partitions longer than this take the pivot as a median of three medians
      */
-    public static final int KEYLEN = 4;
+    static final int NINTHER_THRESHOLD = 128;
 
     /**
-     * Get the value of the position i.
+     * Sort a part of the array using introsort: quicksort with a median-of-three
+     * (ninther for long partitions) pivot, binary insertion sort for short
+     * partitions and heapsort when the recursion gets too deep. Recursion goes
+     * into the shorter part only, so the stack depth is O(log n) and the running
+     * time O(n log n) for every input.
+     *
+     * @param array array to be changed
+     * @param l     starting index (included)
+     * @param r     ending index (excluded)
      */
-    public static int getValue(int key, int i) {
-        return (key >>> (8 * i)) & 0xff;
+    public static void introSort(int[] array, int l, int r) {
+        if (array == null || l < 0 || r > array.length || r < l)
+            throw new IllegalArgumentException("introSort: wrong parameters");
+        introSort(array, l, r, 2 * (32 - Integer.numberOfLeadingZeros(r - l)));
+    }
+
+    private static void introSort(int[] array, int l, int r, int depth) {
+        introSort(array, l, r, depth, false);
     }
 
     /**
-     * Sort non-negative keys by position i in a stable manner.
+     * Introsort whose partitions of up to NETWORK_SIZE elements are sorted by
+     * sorting networks when network is true, otherwise by binary insertion sort.
      */
-    public static int[] countSort(int[] keys, int i) {
-        if (keys == null)
-            return null;
-        int[] res = new int[keys.length];
-        for (int k = 0; k < freq.length; k++) {
-            freq[k] = 0;
+    private static void introSort(int[] array, int l, int r, int depth, boolean network) {
+        SortMetrics.Counters c = SortMetrics.ENABLED ? SortMetrics.counters() : null;
+        if (SortMetrics.ENABLED)
+            c.enter();
+        int cutoff = network ? NETWORK_SIZE : INSERTION_SORT_THRESHOLD;
+        while (r - l > cutoff) {
+            if (depth-- == 0) {
+                heapSort(array, l, r);
+                if (SortMetrics.ENABLED)
+                    c.exit();
+                return;
+            }
+            int i = l;
+            int j = r - 1;
+            int x = choosePivot(array, l, r);
+            do {
+                while (array[i] < x) {
+                    i++;
+                    if (SortMetrics.ENABLED)
+                        c.comparisons++;
+                }
+                while (x < array[j]) {
+                    j--;
+                    if (SortMetrics.ENABLED)
+                        c.comparisons++;
+                }
+                if (SortMetrics.ENABLED)
+                    c.comparisons += 2;
+                if (i <= j) {
+                    int tmp = array[i];
+                    array[i] = array[j];
+                    array[j] = tmp;
+                    i++;
+                    j--;
+                    if (SortMetrics.ENABLED)
+                        c.moves += 2;
+                }
+            } while (i <= j);
+            if (j + 1 - l < r - i) {
+                introSort(array, l, j + 1, depth, network); // recursion for the shorter left part
+                l = i;
+            } else {
+                introSort(array, i, r, depth, network); // recursion for the shorter right part
+                r = j + 1;
+            }
+        }
+        if (network)
+            networkBaseCase(array, l, r);
+        else
+            binaryInsertionSort(array, l, r);
+        if (SortMetrics.ENABLED)
+            c.exit();
+    }
+
+    /**
+     * number of inputs of the sorting network
+     */
+    static final int NETWORK_SIZE = 16;
+
+    /**
+     * Sort a part of the array using introsort whose partitions of up to
+     * NETWORK_SIZE elements are sorted in place by fixed sorting networks of 8
+     * or 16 inputs (19 and 60 comparators). The networks are unrolled over local
+     * variables and every compare-exchange is a Math.min/Math.max pair, which
+     * HotSpot compiles to conditional moves, so short partitions cost no
+     * mispredicted branches.
+     *
+     * @param array array to be changed
+     * @param l     starting index (included)
+     * @param r     ending index (excluded)
+     */
+    public static void networkSort(int[] array, int l, int r) {
+        if (array == null || l < 0 || r > array.length || r < l)
+            throw new IllegalArgumentException("networkSort: wrong parameters");
+        introSort(array, l, r, 2 * (32 - Integer.numberOfLeadingZeros(r - l)), true);
+    }
+
+    /**
+     * Sort the part [l, r) of at most NETWORK_SIZE elements in place by the
+     * 8-input network (up to 8 elements) or the 16-input network.
+     */
+    private static void networkBaseCase(int[] array, int l, int r) {
+        int n = r - l;
+        if (n < 2)
+            return;
+        if (n <= 8)
+            network8(array, l, r);
+        else
+            network16(array, l, r);
+        if (SortMetrics.ENABLED) {
+            SortMetrics.Counters c = SortMetrics.counters();
+            c.comparisons += n <= 8 ? 19 : 60;
+            c.moves += n;
         }
-        for (int key : keys) {
-            freq[getValue(key, i)]++;
+    }
+
+    /**
+     * Sort the part [l, r) of 2 to 8 elements by a 19-comparator sorting
+     * network unrolled over local variables; missing inputs are MAX_VALUE.
+     */
+    @SuppressWarnings("fallthrough")
+    private static void network8(int[] a, int l, int r) {
+        int m = Integer.MAX_VALUE;
+        int x0 = m, x1 = m, x2 = m, x3 = m;
+        int x4 = m, x5 = m, x6 = m, x7 = m;
+        switch (r - l) { // fall through: load the elements present
+            case 8:
+                x7 = a[l + 7];
+            case 7:
+                x6 = a[l + 6];
+            case 6:
+                x5 = a[l + 5];
+            case 5:
+                x4 = a[l + 4];
+            case 4:
+                x3 = a[l + 3];
+            case 3:
+                x2 = a[l + 2];
+            case 2:
+                x1 = a[l + 1];
+            case 1:
+                x0 = a[l];
         }
-        for (int k = 1; k < freq.length; k++) {
-            freq[k] = freq[k - 1] + freq[k];
+        int t;
+        t = Math.min(x0, x2); x2 = Math.max(x0, x2); x0 = t;
+        t = Math.min(x1, x3); x3 = Math.max(x1, x3); x1 = t;
+        t = Math.min(x4, x6); x6 = Math.max(x4, x6); x4 = t;
+        t = Math.min(x5, x7); x7 = Math.max(x5, x7); x5 = t;
+        t = Math.min(x0, x4); x4 = Math.max(x0, x4); x0 = t;
+        t = Math.min(x1, x5); x5 = Math.max(x1, x5); x1 = t;
+        t = Math.min(x2, x6); x6 = Math.max(x2, x6); x2 = t;
+        t = Math.min(x3, x7); x7 = Math.max(x3, x7); x3 = t;
+        t = Math.min(x0, x1); x1 = Math.max(x0, x1); x0 = t;
+        t = Math.min(x2, x3); x3 = Math.max(x2, x3); x2 = t;
+        t = Math.min(x4, x5); x5 = Math.max(x4, x5); x4 = t;
+        t = Math.min(x6, x7); x7 = Math.max(x6, x7); x6 = t;
+        t = Math.min(x2, x4); x4 = Math.max(x2, x4); x2 = t;
+        t = Math.min(x3, x5); x5 = Math.max(x3, x5); x3 = t;
+        t = Math.min(x1, x4); x4 = Math.max(x1, x4); x1 = t;
+        t = Math.min(x3, x6); x6 = Math.max(x3, x6); x3 = t;
+        t = Math.min(x1, x2); x2 = Math.max(x1, x2); x1 = t;
+        t = Math.min(x3, x4); x4 = Math.max(x3, x4); x3 = t;
+        t = Math.min(x5, x6); x6 = Math.max(x5, x6); x5 = t;
+        switch (r - l) { // fall through: store the smallest r - l values back
+            case 8:
+                a[l + 7] = x7;
+            case 7:
+                a[l + 6] = x6;
+            case 6:
+                a[l + 5] = x5;
+            case 5:
+                a[l + 4] = x4;
+            case 4:
+                a[l + 3] = x3;
+            case 3:
+                a[l + 2] = x2;
+            case 2:
+                a[l + 1] = x1;
+            case 1:
+                a[l] = x0;
         }
-        for (int j = keys.length - 1; j >= 0; j--) {
-            int ind = --freq[getValue(keys[j], i)];
-            res[ind] = keys[j];
+    }
+
+    /**
+     * Sort the part [l, r) of 2 to 16 elements by a 60-comparator sorting
+     * network unrolled over local variables; missing inputs are MAX_VALUE.
+     */
+    @SuppressWarnings("fallthrough")
+    private static void network16(int[] a, int l, int r) {
+        int m = Integer.MAX_VALUE;
+        int x0 = m, x1 = m, x2 = m, x3 = m;
+        int x4 = m, x5 = m, x6 = m, x7 = m;
+        int x8 = m, x9 = m, x10 = m, x11 = m;
+        int x12 = m, x13 = m, x14 = m, x15 = m;
+        switch (r - l) { // fall through: load the elements present
+            case 16:
+                x15 = a[l + 15];
+            case 15:
+                x14 = a[l + 14];
+            case 14:
+                x13 = a[l + 13];
+            case 13:
+                x12 = a[l + 12];
+            case 12:
+                x11 = a[l + 11];
+            case 11:
+                x10 = a[l + 10];
+            case 10:
+                x9 = a[l + 9];
+            case 9:
+                x8 = a[l + 8];
+            case 8:
+                x7 = a[l + 7];
+            case 7:
+                x6 = a[l + 6];
+            case 6:
+                x5 = a[l + 5];
+            case 5:
+                x4 = a[l + 4];
+            case 4:
+                x3 = a[l + 3];
+            case 3:
+                x2 = a[l + 2];
+            case 2:
+                x1 = a[l + 1];
+            case 1:
+                x0 = a[l];
+        }
+        int t;
+        t = Math.min(x0, x13); x13 = Math.max(x0, x13); x0 = t;
+        t = Math.min(x1, x12); x12 = Math.max(x1, x12); x1 = t;
+        t = Math.min(x2, x15); x15 = Math.max(x2, x15); x2 = t;
+        t = Math.min(x3, x14); x14 = Math.max(x3, x14); x3 = t;
+        t = Math.min(x4, x8); x8 = Math.max(x4, x8); x4 = t;
+        t = Math.min(x5, x6); x6 = Math.max(x5, x6); x5 = t;
+        t = Math.min(x7, x11); x11 = Math.max(x7, x11); x7 = t;
+        t = Math.min(x9, x10); x10 = Math.max(x9, x10); x9 = t;
+        t = Math.min(x0, x5); x5 = Math.max(x0, x5); x0 = t;
+        t = Math.min(x1, x7); x7 = Math.max(x1, x7); x1 = t;
+        t = Math.min(x2, x9); x9 = Math.max(x2, x9); x2 = t;
+        t = Math.min(x3, x4); x4 = Math.max(x3, x4); x3 = t;
+        t = Math.min(x6, x13); x13 = Math.max(x6, x13); x6 = t;
+        t = Math.min(x8, x14); x14 = Math.max(x8, x14); x8 = t;
+        t = Math.min(x10, x15); x15 = Math.max(x10, x15); x10 = t;
+        t = Math.min(x11, x12); x12 = Math.max(x11, x12); x11 = t;
+        t = Math.min(x0, x1); x1 = Math.max(x0, x1); x0 = t;
+        t = Math.min(x2, x3); x3 = Math.max(x2, x3); x2 = t;
+        t = Math.min(x4, x5); x5 = Math.max(x4, x5); x4 = t;
+        t = Math.min(x6, x8); x8 = Math.max(x6, x8); x6 = t;
+        t = Math.min(x7, x9); x9 = Math.max(x7, x9); x7 = t;
+        t = Math.min(x10, x11); x11 = Math.max(x10, x11); x10 = t;
+        t = Math.min(x12, x13); x13 = Math.max(x12, x13); x12 = t;
+        t = Math.min(x14, x15); x15 = Math.max(x14, x15); x14 = t;
+        t = Math.min(x0, x2); x2 = Math.max(x0, x2); x0 = t;
+        t = Math.min(x1, x3); x3 = Math.max(x1, x3); x1 = t;
+        t = Math.min(x4, x10); x10 = Math.max(x4, x10); x4 = t;
+        t = Math.min(x5, x11); x11 = Math.max(x5, x11); x5 = t;
+        t = Math.min(x6, x7); x7 = Math.max(x6, x7); x6 = t;
+        t = Math.min(x8, x9); x9 = Math.max(x8, x9); x8 = t;
+        t = Math.min(x12, x14); x14 = Math.max(x12, x14); x12 = t;
+        t = Math.min(x13, x15); x15 = Math.max(x13, x15); x13 = t;
+        t = Math.min(x1, x2); x2 = Math.max(x1, x2); x1 = t;
+        t = Math.min(x3, x12); x12 = Math.max(x3, x12); x3 = t;
+        t = Math.min(x4, x6); x6 = Math.max(x4, x6); x4 = t;
+        t = Math.min(x5, x7); x7 = Math.max(x5, x7); x5 = t;
+        t = Math.min(x8, x10); x10 = Math.max(x8, x10); x8 = t;
+        t = Math.min(x9, x11); x11 = Math.max(x9, x11); x9 = t;
+        t = Math.min(x13, x14); x14 = Math.max(x13, x14); x13 = t;
+        t = Math.min(x1, x4); x4 = Math.max(x1, x4); x1 = t;
+        t = Math.min(x2, x6); x6 = Math.max(x2, x6); x2 = t;
+        t = Math.min(x5, x8); x8 = Math.max(x5, x8); x5 = t;
+        t = Math.min(x7, x10); x10 = Math.max(x7, x10); x7 = t;
+        t = Math.min(x9, x13); x13 = Math.max(x9, x13); x9 = t;
+        t = Math.min(x11, x14); x14 = Math.max(x11, x14); x11 = t;
+        t = Math.min(x2, x4); x4 = Math.max(x2, x4); x2 = t;
+        t = Math.min(x3, x6); x6 = Math.max(x3, x6); x3 = t;
+        t = Math.min(x9, x12); x12 = Math.max(x9, x12); x9 = t;
+        t = Math.min(x11, x13); x13 = Math.max(x11, x13); x11 = t;
+        t = Math.min(x3, x5); x5 = Math.max(x3, x5); x3 = t;
+        t = Math.min(x6, x8); x8 = Math.max(x6, x8); x6 = t;
+        t = Math.min(x7, x9); x9 = Math.max(x7, x9); x7 = t;
+        t = Math.min(x10, x12); x12 = Math.max(x10, x12); x10 = t;
+        t = Math.min(x3, x4); x4 = Math.max(x3, x4); x3 = t;
+        t = Math.min(x5, x6); x6 = Math.max(x5, x6); x5 = t;
+        t = Math.min(x7, x8); x8 = Math.max(x7, x8); x7 = t;
+        t = Math.min(x9, x10); x10 = Math.max(x9, x10); x9 = t;
+        t = Math.min(x11, x12); x12 = Math.max(x11, x12); x11 = t;
+        t = Math.min(x6, x7); x7 = Math.max(x6, x7); x6 = t;
+        t = Math.min(x8, x9); x9 = Math.max(x8, x9); x8 = t;
+        switch (r - l) { // fall through: store the smallest r - l values back
+            case 16:
+                a[l + 15] = x15;
+            case 15:
+                a[l + 14] = x14;
+            case 14:
+                a[l + 13] = x13;
+            case 13:
+                a[l + 12] = x12;
+            case 12:
+                a[l + 11] = x11;
+            case 11:
+                a[l + 10] = x10;
+            case 10:
+                a[l + 9] = x9;
+            case 9:
+                a[l + 8] = x8;
+            case 8:
+                a[l + 7] = x7;
+            case 7:
+                a[l + 6] = x6;
+            case 6:
+                a[l + 5] = x5;
+            case 5:
+                a[l + 4] = x4;
+            case 4:
+                a[l + 3] = x3;
+            case 3:
+                a[l + 2] = x2;
+            case 2:
+                a[l + 1] = x1;
+            case 1:
+                a[l] = x0;
         }
-        return res;
     }
 
     /**
-     * Radix sort for non-negative integers.
+     * Partitioning schemes of quicksort.
      */
-    public static void radixSort(int[] keys) {
-        if (keys == null)
+    public enum Partitioning {
+        /**
+         * two-way Hoare partitioning around one pivot (introsort)
+         */
+        TWO_WAY,
+        /**
+         * three-way (Dutch national flag) partitioning into parts less than,
+         * equal to and greater than the pivot; keys equal to the pivot are final
+         */
+        THREE_WAY,
+        /**
+         * partitioning around two pivots p &lt;= q into three parts
+         */
+        DUAL_PIVOT
+    }
+
+    /**
+     * Sort a part of the array using quicksort with the given partitioning.
+     * All schemes use binary insertion sort for short partitions and heapsort
+     * when the recursion gets too deep.
+     *
+     * @param array        array to be changed
+     * @param l            starting index (included)
+     * @param r            ending index (excluded)
+     * @param partitioning partitioning scheme
+     */
+    public static void quickSort(int[] array, int l, int r, Partitioning partitioning) {
+        if (array == null || partitioning == null || l < 0 || r > array.length || r < l)
+            throw new IllegalArgumentException("quickSort: wrong parameters");
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(r - l));
+        switch (partitioning) {
+            case TWO_WAY:
+                introSort(array, l, r, depth);
+                break;
+            case THREE_WAY:
+                threeWayQuickSort(array, l, r, depth);
+                break;
+            case DUAL_PIVOT:
+                dualPivotQuickSort(array, l, r, depth);
+                break;
+        }
+    }
+
+    private static void threeWayQuickSort(int[] array, int l, int r, int depth) {
+        SortMetrics.Counters c = SortMetrics.ENABLED ? SortMetrics.counters() : null;
+        if (SortMetrics.ENABLED)
+            c.enter();
+        while (r - l > INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(array, l, r);
+                if (SortMetrics.ENABLED)
+                    c.exit();
+                return;
+            }
+            int x = choosePivot(array, l, r);
+            // [l, lt) < x, [lt, i) == x, [gt, r) > x
+            int lt = l;
+            int i = l;
+            int gt = r;
+            while (i < gt) {
+                int v = array[i];
+                if (v < x) {
+                    array[i++] = array[lt];
+                    array[lt++] = v;
+                    if (SortMetrics.ENABLED) {
+                        c.comparisons++;
+                        c.moves += 2;
+                    }
+                } else if (v > x) {
+                    array[i] = array[--gt];
+                    array[gt] = v;
+                    if (SortMetrics.ENABLED) {
+                        c.comparisons += 2;
+                        c.moves += 2;
+                    }
+                } else {
+                    i++;
+                    if (SortMetrics.ENABLED)
+                        c.comparisons += 2;
+                }
+            }
+            if (lt - l < r - gt) {
+                threeWayQuickSort(array, l, lt, depth);
+                l = gt;
+            } else {
+                threeWayQuickSort(array, gt, r, depth);
+                r = lt;
+            }
+        }
+        binaryInsertionSort(array, l, r);
+        if (SortMetrics.ENABLED)
+            c.exit();
+    }
+
+    private static void dualPivotQuickSort(int[] array, int l, int r, int depth) {
+        SortMetrics.Counters c = SortMetrics.ENABLED ? SortMetrics.counters() : null;
+        if (SortMetrics.ENABLED)
+            c.enter();
+        while (r - l > INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(array, l, r);
+                if (SortMetrics.ENABLED)
+                    c.exit();
+                return;
+            }
+            int last = r - 1;
+            int third = (r - l) / 3;
+            swap(array, l, l + third);
+            swap(array, last, last - third);
+            if (SortMetrics.ENABLED) {
+                c.comparisons++;
+                c.moves += 4;
+            }
+            if (array[l] > array[last]) {
+                swap(array, l, last);
+                if (SortMetrics.ENABLED)
+                    c.moves += 2;
+            }
+            int p = array[l];
+            int q = array[last];
+            // [l + 1, lt) < p, [lt, k) in [p, q], (gt, last) > q
+            int lt = l + 1;
+            int gt = last - 1;
+            for (int k = lt; k <= gt; k++) {
+                int v = array[k];
+                if (SortMetrics.ENABLED)
+                    c.comparisons++;
+                if (v < p) {
+                    swap(array, k, lt++);
+                    if (SortMetrics.ENABLED)
+                        c.moves += 2;
+                } else {
+                    if (SortMetrics.ENABLED)
+                        c.comparisons++;
+                    if (v > q) {
+                        while (array[gt] > q && k < gt) {
+                            gt--;
+                            if (SortMetrics.ENABLED)
+                                c.comparisons++;
+                        }
+                        swap(array, k, gt--);
+                        if (SortMetrics.ENABLED) {
+                            c.comparisons += 2;
+                            c.moves += 2;
+                        }
+                        if (array[k] < p) {
+                            swap(array, k, lt++);
+                            if (SortMetrics.ENABLED)
+                                c.moves += 2;
+                        }
+                    }
+                }
+            }
+            lt--;
+            gt++;
+            swap(array, l, lt);
+            swap(array, last, gt);
+            if (SortMetrics.ENABLED) {
+                c.comparisons++;
+                c.moves += 4;
+            }
+            // [l, lt) < p, array[lt] = p, (lt, gt) in [p, q], array[gt] = q, (gt, r) > q
+            if (p == q) {
+                // the middle part equals the pivots and is already in place
+                if (lt - l < r - gt - 1) {
+                    dualPivotQuickSort(array, l, lt, depth);
+                    l = gt + 1;
+                } else {
+                    dualPivotQuickSort(array, gt + 1, r, depth);
+                    r = lt;
+                }
+                continue;
+            }
+            int left = lt - l;
+            int middle = gt - lt - 1;
+            int right = r - gt - 1;
+            if (left >= middle && left >= right) {
+                dualPivotQuickSort(array, lt + 1, gt, depth);
+                dualPivotQuickSort(array, gt + 1, r, depth);
+                r = lt;
+            } else if (middle >= right) {
+                dualPivotQuickSort(array, l, lt, depth);
+                dualPivotQuickSort(array, gt + 1, r, depth);
+                l = lt + 1;
+                r = gt;
+            } else {
+                dualPivotQuickSort(array, l, lt, depth);
+                dualPivotQuickSort(array, lt + 1, gt, depth);
+                l = gt + 1;
+            }
+        }
+        binaryInsertionSort(array, l, r);
+        if (SortMetrics.ENABLED)
+            c.exit();
+    }
+
+    /**
+     * Swap two elements of the array.
+     */
+    private static void swap(int[] array, int i, int j) {
+        int tmp = array[i];
+        array[i] = array[j];
+        array[j] = tmp;
+    }
+
+    /**
+     * parts up to this length are sorted sequentially by the parallel sorts
+     */
+    static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+    /**
+     * Sort a part of the array using quicksort in the common fork-join pool.
+     * Both parts of every partition are sorted in parallel until they get shorter
+     * than PARALLEL_SORT_THRESHOLD, then introsort takes over.
+     *
+     * @param array array to be changed
+     * @param l     starting index (included)
+     * @param r     ending index (excluded)
+     */
+    public static void parallelQuickSort(int[] array, int l, int r) {
+        if (array == null || array.length < 1 || l < 0 || r <= l || r > array.length)
+            throw new IllegalArgumentException("parallelQuickSort: wrong parameters");
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(r - l));
+        ForkJoinPool.commonPool().invoke(new QuickSortTask(array, l, r, depth));
+    }
+
+    /**
+     * Sort a part of the array using merge sort in the common fork-join pool.
+     * The halves are sorted in parallel and merged in parallel into a scratch
+     * buffer; parts shorter than PARALLEL_SORT_THRESHOLD are sorted by introsort.
+     *
+     * @param array array to be changed
+     * @param l     starting index (included)
+     * @param r     ending index (excluded)
+     */
+    public static void parallelMergeSort(int[] array, int l, int r) {
+        if (array == null || array.length < 1 || l < 0 || r <= l || r > array.length)
+            throw new IllegalArgumentException("parallelMergeSort: wrong parameters");
+        ForkJoinPool.commonPool().invoke(new MergeSortTask(array, new int[r - l], l, l, r));
+    }
+
+    /**
+     * Quicksort of the part [l, r) that forks the sorting of both partitions.
+     */
+    private static class QuickSortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] array;
+        private final int l;
+        private final int r;
+        private final int depth;
+
+        QuickSortTask(int[] array, int l, int r, int depth) {
+            this.array = array;
+            this.l = l;
+            this.r = r;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (r - l < PARALLEL_SORT_THRESHOLD || depth == 0) {
+                introSort(array, l, r, depth);
+                return;
+            }
+            int i = l;
+            int j = r - 1;
+            int x = choosePivot(array, l, r);
+            do {
+                while (array[i] < x)
+                    i++;
+                while (x < array[j])
+                    j--;
+                if (i <= j) {
+                    swap(array, i, j);
+                    i++;
+                    j--;
+                }
+            } while (i <= j);
+            invokeAll(new QuickSortTask(array, l, j + 1, depth - 1),
+                    new QuickSortTask(array, i, r, depth - 1));
+        }
+    }
+
+    /**
+     * Merge sort of the part [l, r) that forks the sorting of both halves. The
+     * buffer covers only the part sorted by parallelMergeSort: array[i]
+     * corresponds to buffer[i - base].
+     */
+    private static class MergeSortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] array;
+        private final int[] buffer;
+        private final int base;
+        private final int l;
+        private final int r;
+
+        MergeSortTask(int[] array, int[] buffer, int base, int l, int r) {
+            this.array = array;
+            this.buffer = buffer;
+            this.base = base;
+            this.l = l;
+            this.r = r;
+        }
+
+        @Override
+        protected void compute() {
+            if (r - l < PARALLEL_SORT_THRESHOLD) {
+                introSort(array, l, r);
+                return;
+            }
+            int mid = (l + r) >>> 1;
+            invokeAll(new MergeSortTask(array, buffer, base, l, mid),
+                    new MergeSortTask(array, buffer, base, mid, r));
+            if (array[mid - 1] <= array[mid])
+                return;
+            new MergeTask(array, l, mid, mid, r, buffer, l - base).compute();
+            System.arraycopy(buffer, l - base, array, l, r - l);
+        }
+    }
+
+    /**
+     * Merge of the sorted parts src[l1, r1) and src[l2, r2) into dst starting at d.
+     * Long merges are split at the middle of the longer part, the matching position
+     * in the other part is found by binary search, and both halves merge in parallel.
+     */
+    private static class MergeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src;
+        private final int l1;
+        private final int r1;
+        private final int l2;
+        private final int r2;
+        private final int[] dst;
+        private final int d;
+
+        MergeTask(int[] src, int l1, int r1, int l2, int r2, int[] dst, int d) {
+            this.src = src;
+            this.l1 = l1;
+            this.r1 = r1;
+            this.l2 = l2;
+            this.r2 = r2;
+            this.dst = dst;
+            this.d = d;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = r1 - l1;
+            int n2 = r2 - l2;
+            if (n1 + n2 < PARALLEL_SORT_THRESHOLD) {
+                merge(src, l1, r1, l2, r2, dst, d);
+                return;
+            }
+            if (n1 >= n2) {
+                int m1 = (l1 + r1) >>> 1;
+                int m2 = lowerBound(src, l2, r2, src[m1]);
+                int dm = d + (m1 - l1) + (m2 - l2);
+                dst[dm] = src[m1];
+                invokeAll(new MergeTask(src, l1, m1, l2, m2, dst, d),
+                        new MergeTask(src, m1 + 1, r1, m2, r2, dst, dm + 1));
+            } else {
+                int m2 = (l2 + r2) >>> 1;
+                int m1 = upperBound(src, l1, r1, src[m2]);
+                int dm = d + (m1 - l1) + (m2 - l2);
+                dst[dm] = src[m2];
+                invokeAll(new MergeTask(src, l1, m1, l2, m2, dst, d),
+                        new MergeTask(src, m1, r1, m2 + 1, r2, dst, dm + 1));
+            }
+        }
+    }
+
+    /**
+     * Merge the sorted parts src[l1, r1) and src[l2, r2) into dst starting at d.
+     * On equal keys the first part goes first.
+     */
+    static void merge(int[] src, int l1, int r1, int l2, int r2, int[] dst, int d) {
+        while (l1 < r1 && l2 < r2) {
+            dst[d++] = src[l2] < src[l1] ? src[l2++] : src[l1++];
+        }
+        System.arraycopy(src, l1, dst, d, r1 - l1);
+        System.arraycopy(src, l2, dst, d + r1 - l1, r2 - l2);
+    }
+
+    /**
+     * First index in the sorted part a[l, r) whose value is not less than x.
+     */
+    static int lowerBound(int[] a, int l, int r, int x) {
+        while (l < r) {
+            int mid = (l + r) >>> 1;
+            if (a[mid] < x)
+                l = mid + 1;
+            else
+                r = mid;
+        }
+        return l;
+    }
+
+    /**
+     * First index in the sorted part a[l, r) whose value is greater than x.
+     */
+    static int upperBound(int[] a, int l, int r, int x) {
+        while (l < r) {
+            int mid = (l + r) >>> 1;
+            if (a[mid] <= x)
+                l = mid + 1;
+            else
+                r = mid;
+        }
+        return l;
+    }
+
+    /**
+     * arrays shorter than this are sorted by binary insertion sort in runMergeSort
+     */
+    static final int MIN_MERGE = 32;
+
+    /**
+     * number of consecutive wins of one run after which merging starts galloping
+     */
+    static final int MIN_GALLOP = 7;
+
+    /**
+     * Natural merge sort in the manner of TimSort. Ascending and strictly
+     * descending runs are detected (descending ones are reversed), short runs are
+     * extended by binary insertion sort, and the runs are merged with galloping
+     * through one merge buffer. Nearly sorted arrays are sorted in almost linear
+     * time. The sort is stable.
+     *
+     * @param a array to be sorted
+     */
+    public static void runMergeSort(int[] a) {
+        runMergeSort(a, 0, a.length);
+    }
+
+    /**
+     * Natural merge sort of a part of the array.
+     *
+     * @param a array to be changed
+     * @param l starting index (included)
+     * @param r ending index (excluded)
+     */
+    public static void runMergeSort(int[] a, int l, int r) {
+        if (a == null || l < 0 || r > a.length || r < l)
+            throw new IllegalArgumentException("runMergeSort: wrong parameters");
+        if (r - l < MIN_MERGE) {
+            binaryInsertionSort(a, l, r);
             return;
-        int[] res = keys;
-        for (int p = 0; p < KEYLEN; p++) {
-            res = countSort(res, p);
         }
-        System.arraycopy(res, 0, keys, 0, keys.length);
+        new RunMerger(new int[0]).sort(a, l, r);
+    }
+
+    /**
+     * Natural merge sort of the array using the merge buffer and the run stack
+     * of the workspace; once the workspace has grown, no memory is allocated.
+     *
+     * @param a         array to be sorted
+     * @param workspace reusable scratch memory, not shared between threads
+     */
+    public static void runMergeSort(int[] a, SortWorkspace workspace) {
+        runMergeSort(a, 0, a.length, workspace);
+    }
+
+    /**
+     * Natural merge sort of a part of the array using the workspace.
+     *
+     * @param a         array to be changed
+     * @param l         starting index (included)
+     * @param r         ending index (excluded)
+     * @param workspace reusable scratch memory, not shared between threads
+     */
+    public static void runMergeSort(int[] a, int l, int r, SortWorkspace workspace) {
+        if (a == null || workspace == null || l < 0 || r > a.length || r < l)
+            throw new IllegalArgumentException("runMergeSort: wrong parameters");
+        if (r - l < MIN_MERGE) {
+            binaryInsertionSort(a, l, r);
+            return;
+        }
+        RunMerger merger = workspace.merger();
+        merger.tmp = workspace.buffer(0);
+        merger.sort(a, l, r);
+        workspace.keep(merger.tmp);
+    }
+
+    /**
+     * State of a natural merge sort: the stack of pending runs, the merge
+     * buffer and the current galloping threshold. The state can be reused for
+     * the next sort.
+     */
+    static class RunMerger {
+
+        private int[] a;
+        private int[] tmp;
+        private final int[] runBase = new int[49];
+        private final int[] runLen = new int[49];
+        private int stackSize;
+        private int minGallop;
+
+        RunMerger(int[] tmp) {
+            this.tmp = tmp;
+        }
+
+        void sort(int[] a, int l, int r) {
+            this.a = a;
+            stackSize = 0;
+            minGallop = MIN_GALLOP;
+            int n = r - l;
+            int minRun = minRunLength(n);
+            while (n > 0) {
+                int len = countRunAndMakeAscending(a, l, r);
+                if (len < minRun) {
+                    int force = Math.min(n, minRun);
+                    binaryInsertionSort(a, l, l + force);
+                    len = force;
+                }
+                runBase[stackSize] = l;
+                runLen[stackSize] = len;
+                stackSize++;
+                mergeCollapse();
+                l += len;
+                n -= len;
+            }
+            while (stackSize > 1) {
+                int k = stackSize - 2;
+                if (k > 0 && runLen[k - 1] < runLen[k + 1])
+                    k--;
+                mergeAt(k);
+            }
+            this.a = null;
+        }
+
+        /**
+         * Merge runs until the lengths on the stack grow faster than Fibonacci
+         * numbers from the top down.
+         */
+        private void mergeCollapse() {
+            while (stackSize > 1) {
+                int k = stackSize - 2;
+                if ((k > 0 && runLen[k - 1] <= runLen[k] + runLen[k + 1])
+                        || (k > 1 && runLen[k - 2] <= runLen[k - 1] + runLen[k])) {
+                    if (runLen[k - 1] < runLen[k + 1])
+                        k--;
+                } else if (runLen[k] > runLen[k + 1]) {
+                    break;
+                }
+                mergeAt(k);
+            }
+        }
+
+        /**
+         * Merge the runs k and k + 1 of the stack.
+         */
+        private void mergeAt(int k) {
+            int base1 = runBase[k];
+            int len1 = runLen[k];
+            int base2 = runBase[k + 1];
+            int len2 = runLen[k + 1];
+            runLen[k] = len1 + len2;
+            if (k == stackSize - 3) {
+                runBase[k + 1] = runBase[k + 2];
+                runLen[k + 1] = runLen[k + 2];
+            }
+            stackSize--;
+            // elements of run 1 not greater than the first of run 2 are in place
+            int skip = gallopRight(a[base2], a, base1, len1);
+            base1 += skip;
+            len1 -= skip;
+            if (len1 == 0)
+                return;
+            // elements of run 2 not less than the last of run 1 are in place
+            len2 = gallopLeft(a[base1 + len1 - 1], a, base2, len2);
+            if (len2 == 0)
+                return;
+            if (len1 <= len2)
+                mergeLo(base1, len1, base2, len2);
+            else
+                mergeHi(base1, len1, base2, len2);
+        }
+
+        private int[] ensureCapacity(int length) {
+            if (tmp.length < length) {
+                tmp = new int[Math.max(length, Math.min(a.length, 2 * tmp.length))];
+                if (SortMetrics.ENABLED)
+                    SortMetrics.counters().allocate(tmp.length);
+            }
+            return tmp;
+        }
+
+        /**
+         * Merge the adjacent runs from the left, run 1 being the shorter one.
+         */
+        private void mergeLo(int base1, int len1, int base2, int len2) {
+            int[] t = ensureCapacity(len1);
+            System.arraycopy(a, base1, t, 0, len1);
+            int c1 = 0;
+            int c2 = base2;
+            int d = base1;
+            int end2 = base2 + len2;
+            outer:
+            while (true) {
+                int count1 = 0;
+                int count2 = 0;
+                do {
+                    if (a[c2] < t[c1]) {
+                        a[d++] = a[c2++];
+                        count2++;
+                        count1 = 0;
+                        if (c2 == end2)
+                            break outer;
+                    } else {
+                        a[d++] = t[c1++];
+                        count1++;
+                        count2 = 0;
+                        if (c1 == len1)
+                            break outer;
+                    }
+                } while ((count1 | count2) < minGallop);
+                do {
+                    count1 = gallopRight(a[c2], t, c1, len1 - c1);
+                    if (count1 != 0) {
+                        System.arraycopy(t, c1, a, d, count1);
+                        d += count1;
+                        c1 += count1;
+                        if (c1 == len1)
+                            break outer;
+                    }
+                    a[d++] = a[c2++];
+                    if (c2 == end2)
+                        break outer;
+                    count2 = gallopLeft(t[c1], a, c2, end2 - c2);
+                    if (count2 != 0) {
+                        System.arraycopy(a, c2, a, d, count2);
+                        d += count2;
+                        c2 += count2;
+                        if (c2 == end2)
+                            break outer;
+                    }
+                    a[d++] = t[c1++];
+                    if (c1 == len1)
+                        break outer;
+                    minGallop--;
+                } while (count1 >= MIN_GALLOP || count2 >= MIN_GALLOP);
+                minGallop = Math.max(minGallop, 0) + 2;
+            }
+            minGallop = Math.max(minGallop, 1);
+            System.arraycopy(t, c1, a, d, len1 - c1);
+        }
+
+        /**
+         * Merge the adjacent runs from the right, run 2 being the shorter one.
+         */
+        private void mergeHi(int base1, int len1, int base2, int len2) {
+            int[] t = ensureCapacity(len2);
+            System.arraycopy(a, base2, t, 0, len2);
+            int c1 = base1 + len1 - 1;
+            int c2 = len2 - 1;
+            int d = base2 + len2 - 1;
+            outer:
+            while (true) {
+                int count1 = 0;
+                int count2 = 0;
+                do {
+                    if (t[c2] < a[c1]) {
+                        a[d--] = a[c1--];
+                        count1++;
+                        count2 = 0;
+                        if (c1 < base1)
+                            break outer;
+                    } else {
+                        a[d--] = t[c2--];
+                        count2++;
+                        count1 = 0;
+                        if (c2 < 0)
+                            break outer;
+                    }
+                } while ((count1 | count2) < minGallop);
+                do {
+                    count1 = c1 - base1 + 1 - gallopRight(t[c2], a, base1, c1 - base1 + 1);
+                    if (count1 != 0) {
+                        d -= count1;
+                        c1 -= count1;
+                        System.arraycopy(a, c1 + 1, a, d + 1, count1);
+                        if (c1 < base1)
+                            break outer;
+                    }
+                    a[d--] = t[c2--];
+                    if (c2 < 0)
+                        break outer;
+                    count2 = c2 + 1 - gallopLeft(a[c1], t, 0, c2 + 1);
+                    if (count2 != 0) {
+                        d -= count2;
+                        c2 -= count2;
+                        System.arraycopy(t, c2 + 1, a, d + 1, count2);
+                        if (c2 < 0)
+                            break outer;
+                    }
+                    a[d--] = a[c1--];
+                    if (c1 < base1)
+                        break outer;
+                    minGallop--;
+                } while (count1 >= MIN_GALLOP || count2 >= MIN_GALLOP);
+                minGallop = Math.max(minGallop, 0) + 2;
+            }
+            minGallop = Math.max(minGallop, 1);
+            System.arraycopy(t, 0, a, d - c2, c2 + 1);
+        }
+    }
+
+    /**
+     * Minimal run length for the natural merge sort of n elements: between
+     * MIN_MERGE / 2 and MIN_MERGE, such that n / minRun is close to a power of two.
+     */
+    static int minRunLength(int n) {
+        int low = 0;
+        while (n >= MIN_MERGE) {
+            low |= n & 1;
+            n >>= 1;
+        }
+        return n + low;
+    }
+
+    /**
+     * Length of the run starting at l; a strictly descending run is reversed.
+     */
+    static int countRunAndMakeAscending(int[] a, int l, int r) {
+        int k = l + 1;
+        if (k == r)
+            return 1;
+        if (a[k++] < a[l]) {
+            while (k < r && a[k] < a[k - 1])
+                k++;
+            for (int i = l, j = k - 1; i < j; i++, j--) {
+                swap(a, i, j);
+            }
+        } else {
+            while (k < r && a[k] >= a[k - 1])
+                k++;
+        }
+        return k - l;
+    }
+
+    /**
+     * Number of elements in the sorted part a[base, base + len) that are not
+     * greater than key, found by exponential and then binary search.
+     */
+    static int gallopRight(int key, int[] a, int base, int len) {
+        int last = 0;
+        int ofs = 1;
+        while (ofs <= len && a[base + ofs - 1] <= key) {
+            last = ofs;
+            ofs = ofs > len / 2 ? len + 1 : 2 * ofs;
+        }
+        return upperBound(a, base + last, base + Math.min(ofs - 1, len), key) - base;
+    }
+
+    /**
+     * Number of elements in the sorted part a[base, base + len) that are less
+     * than key, found by exponential and then binary search.
+     */
+    static int gallopLeft(int key, int[] a, int base, int len) {
+        int last = 0;
+        int ofs = 1;
+        while (ofs <= len && a[base + ofs - 1] < key) {
+            last = ofs;
+            ofs = ofs > len / 2 ? len + 1 : 2 * ofs;
+        }
+        return lowerBound(a, base + last, base + Math.min(ofs - 1, len), key) - base;
+    }
+
+    /**
+     * Rearrange the array so that a[n] is the element that would be there in the
+     * sorted array, no element before it is greater and no element after it is
+     * smaller (introselect). Runs in O(n) expected and O(n log n) worst time.
+     *
+     * @param a array to be changed
+     * @param n index of the element to be placed
+     */
+    public static void nthElement(int[] a, int n) {
+        if (a == null || n < 0 || n >= a.length)
+            throw new IllegalArgumentException("nthElement: wrong parameters");
+        int l = 0;
+        int r = a.length;
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(r));
+        while (r - l > INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(a, l, r);
+                return;
+            }
+            int i = l;
+            int j = r - 1;
+            int x = choosePivot(a, l, r);
+            do {
+                while (a[i] < x)
+                    i++;
+                while (x < a[j])
+                    j--;
+                if (i <= j) {
+                    swap(a, i, j);
+                    i++;
+                    j--;
+                }
+            } while (i <= j);
+            // [l, j] <= x, (j, i) == x, [i, r) >= x
+            if (n <= j)
+                r = j + 1;
+            else if (n >= i)
+                l = i;
+            else
+                return;
+        }
+        binaryInsertionSort(a, l, r);
+    }
+
+    /**
+     * Move the k smallest elements of the array to its beginning in sorted
+     * order; the order of the rest is unspecified. Runs in O(n + k log k).
+     *
+     * @param a array to be changed
+     * @param k number of elements to be sorted
+     */
+    public static void partialSort(int[] a, int k) {
+        if (a == null || k < 0 || k > a.length)
+            throw new IllegalArgumentException("partialSort: wrong parameters");
+        if (k == 0)
+            return;
+        if (k < a.length)
+            nthElement(a, k - 1);
+        introSort(a, 0, k);
+    }
+
+    /**
+     * Pivot value for the part [l, r): median of three, or for long parts the
+     * median of the medians of three evenly spaced triples (Tukey's ninther).
+     */
+    static int choosePivot(int[] array, int l, int r) {
+        int last = r - 1;
+        int mid = (l + last) >>> 1;
+        if (r - l <= NINTHER_THRESHOLD)
+            return median(array[l], array[mid], array[last]);
+        int step = (r - l) / 8;
+        return median(
+                median(array[l], array[l + step], array[l + 2 * step]),
+                median(array[mid - step], array[mid], array[mid + step]),
+                median(array[last - 2 * step], array[last - step], array[last]));
+    }
+
+    /**
+     * Median of three values.
+     */
+    static int median(int a, int b, int c) {
+        if (SortMetrics.ENABLED)
+            SortMetrics.counters().comparisons += (a < b ? b < c : a < c) ? 2 : 3;
+        if (a < b) {
+            if (b < c)
+                return b;
+            return a < c ? c : a;
+        }
+        if (a < c)
+            return a;
+        return b < c ? c : b;
+    }
+
+    /**
+     * Sort a part of the array using heapsort.
+     *
+     * @param array array to be changed
+     * @param l     starting index (included)
+     * @param r     ending index (excluded)
+     */
+    private static void heapSort(int[] array, int l, int r) {
+        int n = r - l;
+        for (int k = n / 2 - 1; k >= 0; k--) {
+            siftDown(array, l, k, n);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            int tmp = array[l];
+            array[l] = array[l + end];
+            array[l + end] = tmp;
+            if (SortMetrics.ENABLED)
+                SortMetrics.counters().moves += 2;
+            siftDown(array, l, 0, end);
+        }
+    }
+
+    /**
+     * Move the element k of the max-heap array[l .. l + n) down to its place.
+     */
+    private static void siftDown(int[] array, int l, int k, int n) {
+        SortMetrics.Counters c = SortMetrics.ENABLED ? SortMetrics.counters() : null;
+        int x = array[l + k];
+        int child;
+        while ((child = 2 * k + 1) < n) {
+            if (SortMetrics.ENABLED)
+                c.comparisons += child + 1 < n ? 2 : 1;
+            if (child + 1 < n && array[l + child] < array[l + child + 1])
+                child++;
+            if (array[l + child] <= x)
+                break;
+            array[l + k] = array[l + child];
+            if (SortMetrics.ENABLED)
+                c.moves++;
+            k = child;
+        }
+        array[l + k] = x;
+        if (SortMetrics.ENABLED)
+            c.moves++;
+    }
+
+    /**
+     * number of positions
+     */
+    public static final int KEYLEN = 4;
+
+    /**
+     * number of different values of one position
+     */
+    static final int RADIX = 256;
+
+    /**
+     * Get the value of the position i.
+     */
+    public static int getValue(int key, int i) {
+        return (key >>> (8 * i)) & 0xff;
+    }
+
+    /**
+     * Get the value of the position i in signed order: the sign bit of the
+     * highest position is inverted, so negative keys come before non-negative ones.
+     */
+    static int getSignedValue(int key, int i) {
+        return i == KEYLEN - 1 ? (key >>> 24) ^ 0x80 : getValue(key, i);
+    }
+
+    /**
+     * Find the bits that are not equal in all keys. A position whose bits are
+     * all zero in the result has the same value in every key and does not need a pass.
+     *
+     * @param keys keys to be examined
+     * @return mask of the varying bits
+     */
+    static int varyingBits(int[] keys) {
+        return varyingBits(keys, 0, keys.length);
+    }
+
+    /**
+     * Sort keys by position i in a stable manner.
+     */
+    public static int[] countSort(int[] keys, int i) {
+        if (keys == null)
+            return null;
+        int[] res = new int[keys.length];
+        if (SortMetrics.ENABLED) {
+            SortMetrics.Counters c = SortMetrics.counters();
+            c.allocate(res.length);
+            c.allocate(RADIX);
+        }
+        countSort(keys, res, keys.length, i, new int[RADIX]);
+        return res;
+    }
+
+    /**
+     * Sort the first n keys by position i into res in a stable manner, the
+     * highest position in signed order. The frequency table
+     * belongs to the caller, so concurrent calls do not share any state.
+     *
+     * @param keys keys to be sorted
+     * @param res  destination of at least n elements
+     * @param n    number of keys
+     * @param i    position
+     * @param freq frequency table of length RADIX
+     */
+    static void countSort(int[] keys, int[] res, int n, int i, int[] freq) {
+        if (SortMetrics.ENABLED) {
+            SortMetrics.Counters c = SortMetrics.counters();
+            c.passes++;
+            c.moves += n;
+        }
+        countPositions(keys, n, i, freq);
+        for (int j = n - 1; j >= 0; j--) {
+            int ind = --freq[getSignedValue(keys[j], i)];
+            res[ind] = keys[j];
+        }
+    }
+
+    /**
+     * Fill freq with the cumulative frequencies of position i (in signed order)
+     * in the first n keys, so that freq[v] is the end of the block of keys with
+     * value v.
+     */
+    static void countPositions(int[] keys, int n, int i, int[] freq) {
+        Arrays.fill(freq, 0);
+        for (int j = 0; j < n; j++) {
+            freq[getSignedValue(keys[j], i)]++;
+        }
+        for (int k = 1; k < freq.length; k++) {
+            freq[k] = freq[k - 1] + freq[k];
+        }
+    }
+
+    /**
+     * Radix sort for integers. Positions that have the same value in all keys are
+     * skipped. All working memory is allocated per call, so the method is safe to
+     * call from several threads at once.
+     */
+    public static void radixSort(int[] keys) {
+        if (keys == null)
+            return;
+        radixSort(keys, new SortWorkspace());
+    }
+
+    /**
+     * Radix sort for integers using the scratch buffer and the frequency table of
+     * the workspace; once the workspace has grown, no memory is allocated.
+     *
+     * @param keys      array to be sorted
+     * @param workspace reusable scratch memory, not shared between threads
+     */
+    public static void radixSort(int[] keys, SortWorkspace workspace) {
+        if (keys == null)
+            return;
+        if (workspace == null)
+            throw new IllegalArgumentException("radixSort: wrong parameters");
+        int n = keys.length;
+        int varying = varyingBits(keys);
+        if (varying == 0)
+            return;
+        int[] freq = workspace.freq();
+        int[] src = keys;
+        int[] dst = workspace.buffer(n);
+        for (int p = 0; p < KEYLEN; p++) {
+            if (getValue(varying, p) == 0)
+                continue;
+            countSort(src, dst, n, p, freq);
+            int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        if (src != keys) {
+            System.arraycopy(src, 0, keys, 0, n);
+            if (SortMetrics.ENABLED)
+                SortMetrics.counters().moves += n;
+        }
+    }
+
+    /**
+     * buckets up to this length are sorted by binary insertion sort in the
+     * American flag sort
+     */
+    static final int AMERICAN_FLAG_CUTOFF = 64;
+
+    /**
+     * In-place MSD radix sort (American flag sort). The keys are permuted into
+     * their buckets of the highest varying position by following cycles, then
+     * every bucket is sorted recursively by the next position. Short buckets
+     * are sorted by binary insertion sort. Besides the recursion only two tables
+     * of RADIX entries per position are needed, no buffer of the array length.
+     * The sort is not stable.
+     *
+     * @param a array to be sorted
+     */
+    public static void americanFlagSort(int[] a) {
+        americanFlagSort(a, 0, a.length);
+    }
+
+    /**
+     * In-place MSD radix sort of a part of the array.
+     *
+     * @param a array to be changed
+     * @param l starting index (included)
+     * @param r ending index (excluded)
+     */
+    public static void americanFlagSort(int[] a, int l, int r) {
+        if (a == null || l < 0 || r > a.length || r < l)
+            throw new IllegalArgumentException("americanFlagSort: wrong parameters");
+        int varying = varyingBits(a, l, r);
+        if (varying == 0)
+            return;
+        int high = highestPosition(varying);
+        int low = lowestPosition(varying);
+        americanFlagSort(a, l, r, high, low, new int[KEYLEN][RADIX + 1], new int[KEYLEN][RADIX]);
+    }
+
+    /**
+     * In-place MSD radix sort in the common fork-join pool: the top-level
+     * distribution is sequential, the resulting buckets are sorted in parallel,
+     * each task with its own tables.
+     *
+     * @param a array to be sorted
+     */
+    public static void parallelAmericanFlagSort(int[] a) {
+        if (a == null)
+            throw new IllegalArgumentException("parallelAmericanFlagSort: wrong parameters");
+        if (a.length < PARALLEL_SORT_THRESHOLD) {
+            americanFlagSort(a);
+            return;
+        }
+        int varying = varyingBits(a, 0, a.length);
+        if (varying == 0)
+            return;
+        int high = highestPosition(varying);
+        int low = lowestPosition(varying);
+        int[] start = new int[RADIX + 1];
+        distribute(a, 0, a.length, high, start, new int[RADIX]);
+        if (high == low)
+            return;
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (int d = 0; d < RADIX; d++) {
+            int from = start[d];
+            int to = start[d + 1];
+            if (to - from > 1) {
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        americanFlagSort(a, from, to, high - 1, low,
+                                new int[KEYLEN][RADIX + 1], new int[KEYLEN][RADIX]);
+                    }
+                });
+            }
+        }
+        ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+
+    private static void americanFlagSort(int[] a, int l, int r, int p, int low, int[][] starts, int[][] nexts) {
+        if (r - l <= AMERICAN_FLAG_CUTOFF) {
+            binaryInsertionSort(a, l, r);
+            return;
+        }
+        int[] start = starts[p];
+        distribute(a, l, r, p, start, nexts[p]);
+        if (p == low)
+            return;
+        for (int d = 0; d < RADIX; d++) {
+            if (start[d + 1] - start[d] > 1)
+                americanFlagSort(a, start[d], start[d + 1], p - 1, low, starts, nexts);
+        }
+    }
+
+    /**
+     * Permute the part [l, r) in place into buckets by position p (in signed
+     * order). Afterwards bucket d is [start[d], start[d + 1]).
+     */
+    private static void distribute(int[] a, int l, int r, int p, int[] start, int[] next) {
+        Arrays.fill(start, 0);
+        for (int i = l; i < r; i++) {
+            start[getSignedValue(a[i], p) + 1]++;
+        }
+        start[0] = l;
+        for (int d = 1; d <= RADIX; d++) {
+            start[d] += start[d - 1];
+        }
+        System.arraycopy(start, 0, next, 0, RADIX);
+        for (int d = 0; d < RADIX; d++) {
+            int end = start[d + 1];
+            while (next[d] < end) {
+                int v = a[next[d]];
+                int dv = getSignedValue(v, p);
+                while (dv != d) {
+                    int tmp = a[next[dv]];
+                    a[next[dv]++] = v;
+                    v = tmp;
+                    dv = getSignedValue(v, p);
+                }
+                a[next[d]++] = v;
+            }
+        }
+    }
+
+    /**
+     * Bits that are not equal in all keys of the part [l, r).
+     */
+    static int varyingBits(int[] keys, int l, int r) {
+        int or = 0;
+        int and = -1;
+        for (int i = l; i < r; i++) {
+            or |= keys[i];
+            and &= keys[i];
+        }
+        return or ^ and;
+    }
+
+    /**
+     * Highest position with a non-zero value in the mask.
+     */
+    static int highestPosition(int mask) {
+        return (31 - Integer.numberOfLeadingZeros(mask)) / 8;
+    }
+
+    /**
+     * Lowest position with a non-zero value in the mask.
+     */
+    static int lowestPosition(int mask) {
+        return Integer.numberOfTrailingZeros(mask) / 8;
+    }
+
+    /**
+     * Radix sort of keys together with an int payload: values[i] stays attached
+     * to keys[i]. The sort is stable.
+     *
+     * @param keys   keys to be sorted
+     * @param values payload of the same length as keys
+     */
+    public static void radixSort(int[] keys, int[] values) {
+        if (keys == null || values == null || keys.length != values.length)
+            throw new IllegalArgumentException("radixSort: wrong parameters");
+        int varying = varyingBits(keys);
+        int[] freq = new int[RADIX];
+        int[] src = keys;
+        int[] dst = new int[keys.length];
+        int[] srcValues = values;
+        int[] dstValues = new int[values.length];
+        for (int p = 0; p < KEYLEN; p++) {
+            if (getValue(varying, p) == 0)
+                continue;
+            countPositions(src, src.length, p, freq);
+            for (int j = src.length - 1; j >= 0; j--) {
+                int ind = --freq[getSignedValue(src[j], p)];
+                dst[ind] = src[j];
+                dstValues[ind] = srcValues[j];
+            }
+            int[] tmp = src;
+            src = dst;
+            dst = tmp;
+            tmp = srcValues;
+            srcValues = dstValues;
+            dstValues = tmp;
+        }
+        if (src != keys) {
+            System.arraycopy(src, 0, keys, 0, keys.length);
+            System.arraycopy(srcValues, 0, values, 0, values.length);
+        }
+    }
+
+    /**
+     * Radix sort of keys together with a long payload: values[i] stays attached
+     * to keys[i]. The sort is stable.
+     *
+     * @param keys   keys to be sorted
+     * @param values payload of the same length as keys
+     */
+    public static void radixSort(int[] keys, long[] values) {
+        if (keys == null || values == null || keys.length != values.length)
+            throw new IllegalArgumentException("radixSort: wrong parameters");
+        int varying = varyingBits(keys);
+        int[] freq = new int[RADIX];
+        int[] src = keys;
+        int[] dst = new int[keys.length];
+        long[] srcValues = values;
+        long[] dstValues = new long[values.length];
+        for (int p = 0; p < KEYLEN; p++) {
+            if (getValue(varying, p) == 0)
+                continue;
+            countPositions(src, src.length, p, freq);
+            for (int j = src.length - 1; j >= 0; j--) {
+                int ind = --freq[getSignedValue(src[j], p)];
+                dst[ind] = src[j];
+                dstValues[ind] = srcValues[j];
+            }
+            int[] tmp = src;
+            src = dst;
+            dst = tmp;
+            long[] tmpValues = srcValues;
+            srcValues = dstValues;
+            dstValues = tmpValues;
+        }
+        if (src != keys) {
+            System.arraycopy(src, 0, keys, 0, keys.length);
+            System.arraycopy(srcValues, 0, values, 0, values.length);
+        }
+    }
+
+    /**
+     * Stable sorting permutation of the keys: keys[result[0]] is the smallest key,
+     * equal keys keep their original order. The keys are not changed.
+     *
+     * @param keys keys to be ordered
+     * @return indices of the keys in sorted order
+     */
+    public static int[] radixSortIndices(int[] keys) {
+        if (keys == null)
+            throw new IllegalArgumentException("radixSortIndices: wrong parameters");
+        int[] indices = new int[keys.length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        radixSort(Arrays.copyOf(keys, keys.length), indices);
+        return indices;
+    }
+
+    /**
+     * Stable sorting permutation of long keys: keys[result[0]] is the smallest
+     * key, equal keys keep their original order. The keys are not changed.
+     *
+     * @param keys keys to be ordered
+     * @return indices of the keys in sorted order
+     */
+    public static int[] radixSortIndices(long[] keys) {
+        if (keys == null)
+            throw new IllegalArgumentException("radixSortIndices: wrong parameters");
+        int n = keys.length;
+        long or = 0;
+        long and = -1;
+        for (long key : keys) {
+            or |= key;
+            and &= key;
+        }
+        long varying = or ^ and;
+        int[] freq = new int[RADIX];
+        long[] src = Arrays.copyOf(keys, n);
+        long[] dst = new long[n];
+        int[] srcIndices = new int[n];
+        int[] dstIndices = new int[n];
+        for (int i = 0; i < n; i++) {
+            srcIndices[i] = i;
+        }
+        for (int p = 0; p < Long.BYTES; p++) {
+            int shift = 8 * p;
+            if (((varying >>> shift) & 0xff) == 0)
+                continue;
+            int flip = p == Long.BYTES - 1 ? 0x80 : 0;
+            Arrays.fill(freq, 0);
+            for (long key : src) {
+                freq[((int) (key >>> shift) & 0xff) ^ flip]++;
+            }
+            for (int k = 1; k < freq.length; k++) {
+                freq[k] = freq[k - 1] + freq[k];
+            }
+            for (int j = n - 1; j >= 0; j--) {
+                int ind = --freq[((int) (src[j] >>> shift) & 0xff) ^ flip];
+                dst[ind] = src[j];
+                dstIndices[ind] = srcIndices[j];
+            }
+            long[] tmp = src;
+            src = dst;
+            dst = tmp;
+            int[] tmpIndices = srcIndices;
+            srcIndices = dstIndices;
+            dstIndices = tmpIndices;
+        }
+        return srcIndices;
+    }
+
+    /**
+     * Radix sort of the ints between the position and the limit of the buffer,
+     * in place. For a direct buffer the scratch buffer is direct too, so the
+     * keys are never copied to the heap.
+     *
+     * @param keys buffer to be sorted
+     */
+    public static void radixSort(IntBuffer keys) {
+        if (keys == null)
+            return;
+        IntBuffer src = keys.slice();
+        int n = src.limit();
+        int or = 0;
+        int and = -1;
+        for (int k = 0; k < n; k++) {
+            int key = src.get(k);
+            or |= key;
+            and &= key;
+        }
+        int varying = or ^ and;
+        if (varying == 0)
+            return;
+        IntBuffer dst = keys.isDirect()
+                ? ByteBuffer.allocateDirect(n * Integer.BYTES).order(keys.order()).asIntBuffer()
+                : IntBuffer.allocate(n);
+        IntBuffer home = src;
+        int[] freq = new int[RADIX];
+        for (int p = 0; p < KEYLEN; p++) {
+            if (getValue(varying, p) == 0)
+                continue;
+            Arrays.fill(freq, 0);
+            for (int k = 0; k < n; k++) {
+                freq[getSignedValue(src.get(k), p)]++;
+            }
+            for (int k = 1; k < freq.length; k++) {
+                freq[k] = freq[k - 1] + freq[k];
+            }
+            for (int j = n - 1; j >= 0; j--) {
+                int key = src.get(j);
+                dst.put(--freq[getSignedValue(key, p)], key);
+            }
+            IntBuffer tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        if (src != home) {
+            home.clear();
+            src.clear();
+            home.put(src);
+        }
+    }
+
+    /**
+     * Sort a part of the buffer in place using quicksort with a median-of-three
+     * pivot, insertion sort for short parts and heapsort when the recursion gets
+     * too deep. Indices are absolute, as in IntBuffer.get(int).
+     *
+     * @param buffer buffer to be changed
+     * @param l      starting index (included)
+     * @param r      ending index (excluded)
+     */
+    public static void quickSort(IntBuffer buffer, int l, int r) {
+        if (buffer == null || l < 0 || r > buffer.limit() || r < l)
+            throw new IllegalArgumentException("quickSort: wrong parameters");
+        quickSort(buffer, l, r, 2 * (32 - Integer.numberOfLeadingZeros(r - l)));
+    }
+
+    private static void quickSort(IntBuffer buffer, int l, int r, int depth) {
+        while (r - l > INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(buffer, l, r);
+                return;
+            }
+            int i = l;
+            int j = r - 1;
+            int x = median(buffer.get(i), buffer.get((i + j) >>> 1), buffer.get(j));
+            do {
+                while (buffer.get(i) < x)
+                    i++;
+                while (x < buffer.get(j))
+                    j--;
+                if (i <= j) {
+                    int tmp = buffer.get(i);
+                    buffer.put(i, buffer.get(j));
+                    buffer.put(j, tmp);
+                    i++;
+                    j--;
+                }
+            } while (i <= j);
+            if (j + 1 - l < r - i) {
+                quickSort(buffer, l, j + 1, depth);
+                l = i;
+            } else {
+                quickSort(buffer, i, r, depth);
+                r = j + 1;
+            }
+        }
+        for (int i = l + 1; i < r; i++) {
+            int b = buffer.get(i);
+            int j;
+            for (j = i - 1; j >= l; j--) {
+                int v = buffer.get(j);
+                if (v <= b)
+                    break;
+                buffer.put(j + 1, v);
+            }
+            buffer.put(j + 1, b);
+        }
+    }
+
+    /**
+     * Sort a part of the buffer using heapsort.
+     */
+    private static void heapSort(IntBuffer buffer, int l, int r) {
+        int n = r - l;
+        for (int k = n / 2 - 1; k >= 0; k--) {
+            siftDown(buffer, l, k, n);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            int tmp = buffer.get(l);
+            buffer.put(l, buffer.get(l + end));
+            buffer.put(l + end, tmp);
+            siftDown(buffer, l, 0, end);
+        }
+    }
+
+    /**
+     * Move the element k of the max-heap buffer[l .. l + n) down to its place.
+     */
+    private static void siftDown(IntBuffer buffer, int l, int k, int n) {
+        int x = buffer.get(l + k);
+        int child;
+        while ((child = 2 * k + 1) < n) {
+            if (child + 1 < n && buffer.get(l + child) < buffer.get(l + child + 1))
+                child++;
+            int c = buffer.get(l + child);
+            if (c <= x)
+                break;
+            buffer.put(l + k, c);
+            k = child;
+        }
+        buffer.put(l + k, x);
+    }
+
+    /**
+     * Radix sort for long integers, the highest position in signed order.
+     */
+    public static void radixSort(long[] keys) {
+        if (keys == null)
+            return;
+        long or = 0;
+        long and = -1;
+        for (long key : keys) {
+            or |= key;
+            and &= key;
+        }
+        long varying = or ^ and;
+        int[] freq = new int[RADIX];
+        long[] src = keys;
+        long[] dst = new long[keys.length];
+        for (int p = 0; p < Long.BYTES; p++) {
+            int shift = 8 * p;
+            if (((varying >>> shift) & 0xff) == 0)
+                continue;
+            int flip = p == Long.BYTES - 1 ? 0x80 : 0;
+            Arrays.fill(freq, 0);
+            for (long key : src) {
+                freq[((int) (key >>> shift) & 0xff) ^ flip]++;
+            }
+            for (int k = 1; k < freq.length; k++) {
+                freq[k] = freq[k - 1] + freq[k];
+            }
+            for (int j = src.length - 1; j >= 0; j--) {
+                dst[--freq[((int) (src[j] >>> shift) & 0xff) ^ flip]] = src[j];
+            }
+            long[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        if (src != keys)
+            System.arraycopy(src, 0, keys, 0, keys.length);
+    }
+
+    /**
+     * Radix sort for short integers, the highest position in signed order.
+     */
+    public static void radixSort(short[] keys) {
+        if (keys == null)
+            return;
+        int or = 0;
+        int and = -1;
+        for (short key : keys) {
+            or |= key;
+            and &= key;
+        }
+        int varying = or ^ and;
+        int[] freq = new int[RADIX];
+        short[] src = keys;
+        short[] dst = new short[keys.length];
+        for (int p = 0; p < Short.BYTES; p++) {
+            int shift = 8 * p;
+            if (((varying >>> shift) & 0xff) == 0)
+                continue;
+            int flip = p == Short.BYTES - 1 ? 0x80 : 0;
+            Arrays.fill(freq, 0);
+            for (short key : src) {
+                freq[((key >>> shift) & 0xff) ^ flip]++;
+            }
+            for (int k = 1; k < freq.length; k++) {
+                freq[k] = freq[k - 1] + freq[k];
+            }
+            for (int j = src.length - 1; j >= 0; j--) {
+                dst[--freq[((src[j] >>> shift) & 0xff) ^ flip]] = src[j];
+            }
+            short[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        if (src != keys)
+            System.arraycopy(src, 0, keys, 0, keys.length);
+    }
+
+    /**
+     * Radix sort for characters (unsigned 16-bit values).
+     */
+    public static void radixSort(char[] keys) {
+        if (keys == null)
+            return;
+        int or = 0;
+        int and = -1;
+        for (char key : keys) {
+            or |= key;
+            and &= key;
+        }
+        int varying = or ^ and;
+        int[] freq = new int[RADIX];
+        char[] src = keys;
+        char[] dst = new char[keys.length];
+        for (int p = 0; p < Character.BYTES; p++) {
+            int shift = 8 * p;
+            if (((varying >>> shift) & 0xff) == 0)
+                continue;
+            Arrays.fill(freq, 0);
+            for (char key : src) {
+                freq[(key >>> shift) & 0xff]++;
+            }
+            for (int k = 1; k < freq.length; k++) {
+                freq[k] = freq[k - 1] + freq[k];
+            }
+            for (int j = src.length - 1; j >= 0; j--) {
+                dst[--freq[(src[j] >>> shift) & 0xff]] = src[j];
+            }
+            char[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        if (src != keys)
+            System.arraycopy(src, 0, keys, 0, keys.length);
+    }
+
+    /**
+     * Radix sort for floats in the order of Arrays.sort: -0.0f before 0.0f and
+     * NaN last. All NaN values are replaced by the canonical Float.NaN.
+     */
+    public static void radixSort(float[] keys) {
+        if (keys == null)
+            return;
+        int[] bits = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            bits[i] = sortableBits(Float.floatToIntBits(keys[i]));
+        }
+        radixSort(bits);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Float.intBitsToFloat(sortableBits(bits[i]));
+        }
+    }
+
+    /**
+     * Radix sort for doubles in the order of Arrays.sort: -0.0d before 0.0d and
+     * NaN last. All NaN values are replaced by the canonical Double.NaN.
+     */
+    public static void radixSort(double[] keys) {
+        if (keys == null)
+            return;
+        long[] bits = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            bits[i] = sortableBits(Double.doubleToLongBits(keys[i]));
+        }
+        radixSort(bits);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Double.longBitsToDouble(sortableBits(bits[i]));
+        }
+    }
+
+    /**
+     * Map the IEEE-754 bits of a float to an int with the same signed order as
+     * the float: the magnitude bits of negative values are inverted. The mapping
+     * is its own inverse.
+     */
+    static int sortableBits(int bits) {
+        return bits ^ ((bits >> 31) & Integer.MAX_VALUE);
+    }
+
+    /**
+     * Map the IEEE-754 bits of a double to a long with the same signed order as
+     * the double. The mapping is its own inverse.
+     */
+    static long sortableBits(long bits) {
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * minimal array length for which the parallel radix sort forks tasks
+     */
+    static final int PARALLEL_RADIX_THRESHOLD = 1 << 16;
+
+    /**
+     * minimal number of keys in one slice of the parallel radix sort
+     */
+    static final int PARALLEL_RADIX_SLICE = 1 << 14;
+
+    /**
+     * Radix sort for integers using the common fork-join pool.
+     * Each pass counts the digits of the array slices in parallel (one histogram
+     * per slice) and then scatters the slices in parallel, alternating between the
+     * array itself and one scratch buffer.
+     *
+     * @param keys array to be sorted
+     */
+    public static void parallelRadixSort(int[] keys) {
+        parallelRadixSort(keys, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Radix sort for integers using the given fork-join pool.
+     *
+     * @param keys array to be sorted
+     * @param pool pool that runs the counting and scattering tasks
+     */
+    public static void parallelRadixSort(int[] keys, ForkJoinPool pool) {
+        if (keys == null)
+            return;
+        if (keys.length < PARALLEL_RADIX_THRESHOLD || pool.getParallelism() < 2) {
+            radixSort(keys);
+            return;
+        }
+        int varying = varyingBits(keys);
+        if (varying == 0)
+            return;
+        int slices = Math.min(pool.getParallelism() * 4, keys.length / PARALLEL_RADIX_SLICE);
+        int[][] hist = new int[slices][RADIX];
+        int[] src = keys;
+        int[] dst = new int[keys.length];
+        for (int p = 0; p < KEYLEN; p++) {
+            if (getValue(varying, p) == 0)
+                continue;
+            pool.invoke(new RadixPass(src, dst, hist, p, 0, slices, false));
+            int sum = 0;
+            for (int d = 0; d < RADIX; d++) {
+                for (int s = 0; s < slices; s++) {
+                    int count = hist[s][d];
+                    hist[s][d] = sum;
+                    sum += count;
+                }
+            }
+            pool.invoke(new RadixPass(src, dst, hist, p, 0, slices, true));
+            int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        if (src != keys)
+            System.arraycopy(src, 0, keys, 0, keys.length);
+    }
+
+    /**
+     * One pass of the parallel radix sort over the slices [from, to).
+     * Counting fills the histogram of every slice, scattering moves the keys of
+     * every slice to the positions prepared in its histogram.
+     */
+    private static class RadixPass extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src;
+        private final int[] dst;
+        private final int[][] hist;
+        private final int digit;
+        private final int from;
+        private final int to;
+        private final boolean scatter;
+
+        RadixPass(int[] src, int[] dst, int[][] hist, int digit, int from, int to, boolean scatter) {
+            this.src = src;
+            this.dst = dst;
+            this.hist = hist;
+            this.digit = digit;
+            this.from = from;
+            this.to = to;
+            this.scatter = scatter;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RadixPass(src, dst, hist, digit, from, mid, scatter),
+                        new RadixPass(src, dst, hist, digit, mid, to, scatter));
+                return;
+            }
+            int lo = (int) ((long) src.length * from / hist.length);
+            int hi = (int) ((long) src.length * to / hist.length);
+            int[] h = hist[from];
+            if (scatter) {
+                for (int k = lo; k < hi; k++) {
+                    int key = src[k];
+                    dst[h[getSignedValue(key, digit)]++] = key;
+                }
+            } else {
+                Arrays.fill(h, 0);
+                for (int k = lo; k < hi; k++) {
+                    h[getSignedValue(src[k], digit)]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Strategies of the adaptive sort.
+     */
+    public enum Strategy {
+        /**
+         * the array is already in order
+         */
+        ALREADY_SORTED,
+        /**
+         * the array is in descending order and is reversed
+         */
+        REVERSED,
+        /**
+         * short array, binary insertion sort
+         */
+        INSERTION,
+        /**
+         * a few ascending runs, natural merge sort
+         */
+        RUN_MERGE,
+        /**
+         * long array or narrow value range, radix sort
+         */
+        RADIX,
+        /**
+         * everything else, introsort
+         */
+        INTROSORT
+    }
+
+    /**
+     * arrays up to this length are sorted by binary insertion sort in sort()
+     */
+    static final int ADAPTIVE_INSERTION_LIMIT = 32;
+
+    /**
+     * arrays with fewer than length / ADAPTIVE_RUN_DIVISOR descents count as
+     * consisting of a few runs
+     */
+    static final int ADAPTIVE_RUN_DIVISOR = 64;
+
+    /**
+     * radix sort is chosen from this length on when at most two byte passes
+     * are needed
+     */
+    static final int ADAPTIVE_NARROW_RADIX_LIMIT = 4096;
+
+    /**
+     * radix sort is chosen from this length on for any value range
+     */
+    static final int ADAPTIVE_RADIX_LIMIT = 1 << 16;
+
+    /**
+     * how often each strategy has been chosen by sort()
+     */
+    private static final LongAdder[] strategyCounts = new LongAdder[Strategy.values().length];
+
+    static {
+        for (int k = 0; k < strategyCounts.length; k++) {
+            strategyCounts[k] = new LongAdder();
+        }
+    }
+
+    /**
+     * Adaptive sort. One scan finds the number of descents and ascents and the
+     * bits that vary between the values, then the array is sorted by the
+     * strategy that suits it best. The choice is counted in the strategy
+     * statistics.
+     *
+     * @param a array to be sorted
+     * @return chosen strategy
+     */
+    public static Strategy sort(int[] a) {
+        Strategy strategy = chooseStrategy(a);
+        strategyCounts[strategy.ordinal()].increment();
+        switch (strategy) {
+            case REVERSED:
+                for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+                    swap(a, i, j);
+                }
+                break;
+            case INSERTION:
+                binaryInsertionSort(a);
+                break;
+            case RUN_MERGE:
+                runMergeSort(a);
+                break;
+            case RADIX:
+                radixSort(a);
+                break;
+            case INTROSORT:
+                introSort(a, 0, a.length);
+                break;
+            default:
+                break;
+        }
+        return strategy;
+    }
+
+    /**
+     * Choose the strategy of the adaptive sort for the array.
+     *
+     * @param a array to be examined
+     * @return strategy for sorting a
+     */
+    static Strategy chooseStrategy(int[] a) {
+        int n = a.length;
+        if (n < 2)
+            return Strategy.ALREADY_SORTED;
+        int descents = 0;
+        int ascents = 0;
+        int or = a[0];
+        int and = a[0];
+        for (int i = 1; i < n; i++) {
+            int prev = a[i - 1];
+            int cur = a[i];
+            if (prev > cur)
+                descents++;
+            else if (prev < cur)
+                ascents++;
+            or |= cur;
+            and &= cur;
+        }
+        if (descents == 0)
+            return Strategy.ALREADY_SORTED;
+        if (ascents == 0)
+            return Strategy.REVERSED;
+        if (n <= ADAPTIVE_INSERTION_LIMIT)
+            return Strategy.INSERTION;
+        if (descents < n / ADAPTIVE_RUN_DIVISOR)
+            return Strategy.RUN_MERGE;
+        int varying = or ^ and;
+        int passes = 0;
+        for (int p = 0; p < KEYLEN; p++) {
+            if (getValue(varying, p) != 0)
+                passes++;
+        }
+        if (n >= ADAPTIVE_RADIX_LIMIT || (n >= ADAPTIVE_NARROW_RADIX_LIMIT && passes <= 2))
+            return Strategy.RADIX;
+        return Strategy.INTROSORT;
+    }
+
+    /**
+     * Number of times each strategy has been chosen by sort() since the start
+     * or the last reset.
+     *
+     * @return snapshot of the counters
+     */
+    public static Map<Strategy, Long> strategyCounts() {
+        Map<Strategy, Long> snapshot = new EnumMap<>(Strategy.class);
+        for (Strategy strategy : Strategy.values()) {
+            snapshot.put(strategy, strategyCounts[strategy.ordinal()].sum());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Reset the strategy statistics of sort().
+     */
+    public static void resetStrategyCounts() {
+        for (LongAdder counter : strategyCounts) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Verify the order of the array in the common fork-join pool: count the
+     * descents and find the first of them. Unlike checkOrder nothing is thrown.
+     *
+     * @param a array to be verified
+     * @return report of the order
+     */
+    public static OrderReport verifyOrder(int[] a) {
+        if (a == null)
+            throw new IllegalArgumentException("verifyOrder: wrong parameters");
+        if (a.length < PARALLEL_SORT_THRESHOLD)
+            return new VerifyTask(a, 0, a.length).compute();
+        return ForkJoinPool.commonPool().invoke(new VerifyTask(a, 0, a.length));
+    }
+
+    /**
+     * Count of descents of the pairs (i, i + 1) with i in [l, r).
+     */
+    private static class VerifyTask extends RecursiveTask<OrderReport> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a;
+        private final int l;
+        private final int r;
+
+        VerifyTask(int[] a, int l, int r) {
+            this.a = a;
+            this.l = l;
+            this.r = r;
+        }
+
+        @Override
+        protected OrderReport compute() {
+            if (r - l > PARALLEL_SORT_THRESHOLD) {
+                int mid = (l + r) >>> 1;
+                VerifyTask right = new VerifyTask(a, mid, r);
+                right.fork();
+                OrderReport first = new VerifyTask(a, l, mid).compute();
+                OrderReport second = right.join();
+                return new OrderReport(a.length, first.getDescents() + second.getDescents(),
+                        first.isSorted() ? second.getFirstViolation() : first.getFirstViolation());
+            }
+            long descents = 0;
+            int firstViolation = -1;
+            int end = Math.min(r, a.length - 1);
+            for (int i = l; i < end; i++) {
+                if (a[i] > a[i + 1]) {
+                    if (descents++ == 0)
+                        firstViolation = i;
+                }
+            }
+            return new OrderReport(a.length, descents, firstViolation);
+        }
+    }
+
+    /**
+     * repairOrder merges windows of at most REPAIR_WORK_FACTOR * length elements
+     * in total before sorting the rest of the array
+     */
+    static final int REPAIR_WORK_FACTOR = 4;
+
+    /**
+     * Sort a mostly sorted array by repairing only its disordered windows. The
+     * sorted prefix is extended run by run; at every descent the next ascending
+     * run is merged into the prefix, and the merge is limited to the elements of
+     * the prefix greater than the run start and the elements of the run less than
+     * the prefix end. When the array has too many descents it is sorted by
+     * runMergeSort instead. The windows are also limited in total: once their
+     * lengths add up to more than REPAIR_WORK_FACTOR * n elements (e.g. when every run starts
+     * below the whole prefix), the rest of the array is sorted by runMergeSort
+     * and merged into the prefix as the last window.
+     *
+     * @param a array to be sorted
+     * @return number of windows that were merged, or -1 if the whole array was
+     * sorted
+     */
+    public static int repairOrder(int[] a) {
+        if (a == null)
+            throw new IllegalArgumentException("repairOrder: wrong parameters");
+        OrderReport report = verifyOrder(a);
+        if (report.isSorted())
+            return 0;
+        if (report.getDescents() > Math.max(MIN_MERGE, a.length / ADAPTIVE_RUN_DIVISOR)) {
+            runMergeSort(a);
+            return -1;
+        }
+        int windows = 0;
+        int[] buffer = new int[0];
+        long work = 0;
+        long budget = (long) REPAIR_WORK_FACTOR * a.length;
+        int i = report.getFirstViolation();
+        while (i >= 0) {
+            // [0, i + 1) is sorted and a[i] > a[i + 1]
+            int j = i + 1;
+            while (j + 1 < a.length && a[j] <= a[j + 1])
+                j++;
+            // [i + 1, j + 1) is the next ascending run
+            int lo = upperBound(a, 0, i + 1, a[i + 1]);
+            int hi = lowerBound(a, i + 1, j + 1, a[i]);
+            work += (i + 1 - lo) + (hi - i - 1);
+            if (work > budget && j + 1 < a.length) {
+                // the windows grow too long: sort the rest as one run
+                runMergeSort(a, i + 1, a.length);
+                j = a.length - 1;
+                lo = upperBound(a, 0, i + 1, a[i + 1]);
+                hi = lowerBound(a, i + 1, j + 1, a[i]);
+            }
+            if (buffer.length < i + 1 - lo)
+                buffer = new int[Math.max(i + 1 - lo, 2 * buffer.length)];
+            System.arraycopy(a, lo, buffer, 0, i + 1 - lo);
+            mergeBuffered(buffer, i + 1 - lo, a, i + 1, hi, lo);
+            windows++;
+            // the prefix end did not decrease, so the descent after the run remains
+            i = j + 1 < a.length ? j : -1;
+        }
+        return windows;
+    }
+
+    /**
+     * Merge the sorted buffer[0, n) and the sorted part a[l2, r2) into a starting
+     * at d = l2 - n. The rest of the part a[l2, r2) is already in place when the
+     * buffer runs out.
+     */
+    private static void mergeBuffered(int[] buffer, int n, int[] a, int l2, int r2, int d) {
+        int l1 = 0;
+        while (l1 < n && l2 < r2) {
+            a[d++] = a[l2] < buffer[l1] ? a[l2++] : buffer[l1++];
+        }
+        System.arraycopy(buffer, l1, a, d, n - l1);
     }
 
     /**
@@ -0,0 +1,218 @@
+package h2;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sorting of object arrays: introsort and merge sort by a comparator, and
+ * radix sort by an extracted int or long key, which avoids comparisons
+ * altogether. The radix sorts extract every key once and sort a permutation
+ * with the primitive radix sorts of IntSorting.
+ *
+ * @since 1.8
+ */
+public class ObjectSorting {
+
+    /**
+     * Sort a part of the array using introsort (quicksort with a median-of-three
+     * pivot, insertion sort for short parts and heapsort when the recursion gets
+     * too deep). The sort is not stable.
+     *
+     * @param a   array to be changed
+     * @param l   starting index (included)
+     * @param r   ending index (excluded)
+     * @param c   order of the elements
+     * @param <T> type of the elements
+     */
+    public static <T> void quickSort(T[] a, int l, int r, Comparator<? super T> c) {
+        if (a == null || c == null || l < 0 || r > a.length || r < l)
+            throw new IllegalArgumentException("quickSort: wrong parameters");
+        quickSort(a, l, r, c, 2 * (32 - Integer.numberOfLeadingZeros(r - l)));
+    }
+
+    private static <T> void quickSort(T[] a, int l, int r, Comparator<? super T> c, int depth) {
+        while (r - l > IntSorting.INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(a, l, r, c);
+                return;
+            }
+            int i = l;
+            int j = r - 1;
+            T x = median(a[i], a[(i + j) >>> 1], a[j], c);
+            do {
+                while (c.compare(a[i], x) < 0)
+                    i++;
+                while (c.compare(x, a[j]) < 0)
+                    j--;
+                if (i <= j) {
+                    swap(a, i, j);
+                    i++;
+                    j--;
+                }
+            } while (i <= j);
+            if (j + 1 - l < r - i) {
+                quickSort(a, l, j + 1, c, depth);
+                l = i;
+            } else {
+                quickSort(a, i, r, c, depth);
+                r = j + 1;
+            }
+        }
+        insertionSort(a, l, r, c);
+    }
+
+    /**
+     * Stable merge sort of the array. Short parts are sorted by insertion sort,
+     * and merging is skipped when the halves are already in order.
+     *
+     * @param a   array to be sorted
+     * @param c   order of the elements
+     * @param <T> type of the elements
+     */
+    public static <T> void mergeSort(T[] a, Comparator<? super T> c) {
+        if (a == null || c == null)
+            throw new IllegalArgumentException("mergeSort: wrong parameters");
+        mergeSort(a, Arrays.copyOf(a, a.length), 0, a.length, c);
+    }
+
+    /**
+     * Sort a[l, r) using buffer[l, r) as scratch memory.
+     */
+    private static <T> void mergeSort(T[] a, T[] buffer, int l, int r, Comparator<? super T> c) {
+        if (r - l <= IntSorting.INSERTION_SORT_THRESHOLD) {
+            insertionSort(a, l, r, c);
+            return;
+        }
+        int mid = (l + r) >>> 1;
+        mergeSort(a, buffer, l, mid, c);
+        mergeSort(a, buffer, mid, r, c);
+        if (c.compare(a[mid - 1], a[mid]) <= 0)
+            return;
+        System.arraycopy(a, l, buffer, l, r - l);
+        int i = l;
+        int j = mid;
+        int d = l;
+        while (i < mid && j < r) {
+            a[d++] = c.compare(buffer[j], buffer[i]) < 0 ? buffer[j++] : buffer[i++];
+        }
+        System.arraycopy(buffer, i, a, d, mid - i);
+        System.arraycopy(buffer, j, a, d + mid - i, r - j);
+    }
+
+    /**
+     * Stable radix sort of the array by an int key.
+     *
+     * @param a   array to be sorted
+     * @param key key of an element
+     * @param <T> type of the elements
+     */
+    public static <T> void radixSortByInt(T[] a, ToIntFunction<? super T> key) {
+        if (a == null || key == null)
+            throw new IllegalArgumentException("radixSortByInt: wrong parameters");
+        int[] keys = new int[a.length];
+        for (int i = 0; i < a.length; i++) {
+            keys[i] = key.applyAsInt(a[i]);
+        }
+        permute(a, IntSorting.radixSortIndices(keys));
+    }
+
+    /**
+     * Stable radix sort of the array by a long key.
+     *
+     * @param a   array to be sorted
+     * @param key key of an element
+     * @param <T> type of the elements
+     */
+    public static <T> void radixSortByLong(T[] a, ToLongFunction<? super T> key) {
+        if (a == null || key == null)
+            throw new IllegalArgumentException("radixSortByLong: wrong parameters");
+        long[] keys = new long[a.length];
+        for (int i = 0; i < a.length; i++) {
+            keys[i] = key.applyAsLong(a[i]);
+        }
+        permute(a, IntSorting.radixSortIndices(keys));
+    }
+
+    /**
+     * Rearrange the array so that a[i] becomes the former a[order[i]].
+     */
+    private static <T> void permute(T[] a, int[] order) {
+        T[] copy = Arrays.copyOf(a, a.length);
+        for (int i = 0; i < order.length; i++) {
+            a[i] = copy[order[i]];
+        }
+    }
+
+    /**
+     * Insertion sort of a part of the array.
+     */
+    private static <T> void insertionSort(T[] a, int l, int r, Comparator<? super T> c) {
+        for (int i = l + 1; i < r; i++) {
+            T b = a[i];
+            int j;
+            for (j = i - 1; j >= l; j--) {
+                if (c.compare(a[j], b) <= 0)
+                    break;
+                a[j + 1] = a[j];
+            }
+            a[j + 1] = b;
+        }
+    }
+
+    /**
+     * Heapsort of a part of the array.
+     */
+    private static <T> void heapSort(T[] a, int l, int r, Comparator<? super T> c) {
+        int n = r - l;
+        for (int k = n / 2 - 1; k >= 0; k--) {
+            siftDown(a, l, k, n, c);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            swap(a, l, l + end);
+            siftDown(a, l, 0, end, c);
+        }
+    }
+
+    /**
+     * Move the element k of the max-heap a[l .. l + n) down to its place.
+     */
+    private static <T> void siftDown(T[] a, int l, int k, int n, Comparator<? super T> c) {
+        T x = a[l + k];
+        int child;
+        while ((child = 2 * k + 1) < n) {
+            if (child + 1 < n && c.compare(a[l + child], a[l + child + 1]) < 0)
+                child++;
+            if (c.compare(a[l + child], x) <= 0)
+                break;
+            a[l + k] = a[l + child];
+            k = child;
+        }
+        a[l + k] = x;
+    }
+
+    /**
+     * Median of three elements.
+     */
+    private static <T> T median(T a, T b, T c, Comparator<? super T> cmp) {
+        if (cmp.compare(a, b) < 0) {
+            if (cmp.compare(b, c) < 0)
+                return b;
+            return cmp.compare(a, c) < 0 ? c : a;
+        }
+        if (cmp.compare(a, c) < 0)
+            return a;
+        return cmp.compare(b, c) < 0 ? c : b;
+    }
+
+    /**
+     * Swap two elements of the array.
+     */
+    private static <T> void swap(T[] a, int i, int j) {
+        T tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+}
@@ -0,0 +1,63 @@
+package h2;
+
+/**
+ * Result of the order verification of an int array: the number of descents
+ * (adjacent pairs a[i] &gt; a[i + 1]), the number of maximal ascending runs and
+ * the index of the first descent.
+ *
+ * @since 1.8
+ */
+public final class OrderReport {
+
+    private final int length;
+    private final long descents;
+    private final int firstViolation;
+
+    OrderReport(int length, long descents, int firstViolation) {
+        this.length = length;
+        this.descents = descents;
+        this.firstViolation = firstViolation;
+    }
+
+    /**
+     * Whether the array is in ascending order.
+     */
+    public boolean isSorted() {
+        return descents == 0;
+    }
+
+    /**
+     * Length of the verified array.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Number of indices i with a[i] &gt; a[i + 1].
+     */
+    public long getDescents() {
+        return descents;
+    }
+
+    /**
+     * Number of maximal ascending runs, 0 for an empty array.
+     */
+    public long getRuns() {
+        return length == 0 ? 0 : descents + 1;
+    }
+
+    /**
+     * Smallest index i with a[i] &gt; a[i + 1], or -1 if the array is sorted.
+     */
+    public int getFirstViolation() {
+        return firstViolation;
+    }
+
+    @Override
+    public String toString() {
+        return "length=" + length + " descents=" + descents + " runs=" + getRuns()
+                + " firstViolation=" + firstViolation;
+    }
+
+}
@@ -0,0 +1,288 @@
+package h2;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Benchmark of the sorting methods of IntSorting. Every method sorts copies of
+ * the same input for each length and distribution: a few warmup runs first, then
+ * the measured runs. The result of each run is folded into a sink, so the work
+ * cannot be removed as dead code. Reported are the minimum, median and 90th
+ * percentile time, the throughput and the bytes allocated by the sorting thread.
+ * For the few-unique distribution the comparisons and swaps of the quicksort
+ * partitioning schemes are reported as well; they are counted when the JVM runs
+ * with {@code -Dh2.sortMetrics=true} (the times then include the counting).
+ * <p>
+ * Usage: {@code java [-Dh2.sortMetrics=true] -cp src h2.SortBenchmark [maxLength [repetitions [largeLength]]]}
+ * <p>
+ * With largeLength (e.g. 10000000) the sequential and parallel radix sorts are
+ * also compared with Arrays.sort and Arrays.parallelSort on that many uniform
+ * keys; the parallel speedup depends on the number of processors reported.
+ *
+ * @since 1.8
+ */
+public class SortBenchmark {
+
+    /**
+     * number of unmeasured runs before the measurement
+     */
+    static final int WARMUP = 3;
+
+    /**
+     * default number of measured runs; with 20 runs the 90th percentile is the
+     * 18th time, not the maximum
+     */
+    static final int REPETITIONS = 20;
+
+    /**
+     * quadratic methods are skipped for longer arrays
+     */
+    static final int QUADRATIC_LIMIT = 64000;
+
+    /**
+     * number of different values in the few-unique and Zipf distributions
+     */
+    static final int FEW_UNIQUE = 1000;
+
+    /**
+     * collects the results of the sorts so that they are not optimized away
+     */
+    static volatile long sink;
+
+    /**
+     * Input distributions.
+     */
+    enum Distribution {
+        UNIFORM, SORTED, NEARLY_SORTED, REVERSE, FEW_UNIQUE, ORGAN_PIPE, ZIPF;
+
+        /**
+         * Generate an input of this distribution.
+         *
+         * @param n         length of the input
+         * @param generator source of randomness
+         * @return new array
+         */
+        int[] generate(int n, Random generator) {
+            int[] a = new int[n];
+            switch (this) {
+                case UNIFORM:
+                    for (int i = 0; i < n; i++)
+                        a[i] = generator.nextInt();
+                    break;
+                case SORTED:
+                    for (int i = 0; i < n; i++)
+                        a[i] = i;
+                    break;
+                case NEARLY_SORTED:
+                    for (int i = 0; i < n; i++)
+                        a[i] = i;
+                    for (int k = 0; k < n / 100; k++) {
+                        int i = generator.nextInt(n);
+                        int j = generator.nextInt(n);
+                        int tmp = a[i];
+                        a[i] = a[j];
+                        a[j] = tmp;
+                    }
+                    break;
+                case REVERSE:
+                    for (int i = 0; i < n; i++)
+                        a[i] = n - i;
+                    break;
+                case FEW_UNIQUE:
+                    for (int i = 0; i < n; i++)
+                        a[i] = generator.nextInt(SortBenchmark.FEW_UNIQUE);
+                    break;
+                case ORGAN_PIPE:
+                    for (int i = 0; i < n; i++)
+                        a[i] = i < n / 2 ? i : n - i;
+                    break;
+                case ZIPF:
+                    double[] cumulative = new double[SortBenchmark.FEW_UNIQUE];
+                    double sum = 0.;
+                    for (int k = 0; k < cumulative.length; k++) {
+                        sum += 1. / (k + 1);
+                        cumulative[k] = sum;
+                    }
+                    for (int i = 0; i < n; i++) {
+                        int k = Arrays.binarySearch(cumulative, generator.nextDouble() * sum);
+                        a[i] = k < 0 ? -k - 1 : k;
+                    }
+                    break;
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Sorting method under test.
+     */
+    static class Sorter {
+
+        final String name;
+        final Consumer<int[]> sort;
+        final boolean quadratic;
+
+        Sorter(String name, Consumer<int[]> sort, boolean quadratic) {
+            this.name = name;
+            this.sort = sort;
+            this.quadratic = quadratic;
+        }
+    }
+
+    /**
+     * All sorting methods of IntSorting.
+     *
+     * @return list of sorters
+     */
+    static List<Sorter> sorters() {
+        List<Sorter> list = new ArrayList<>();
+        list.add(new Sorter("Insertion sort", IntSorting::insertionSort, true));
+        list.add(new Sorter("Binary insertion sort", IntSorting::binaryInsertionSort, true));
+        list.add(new Sorter("Quicksort", a -> IntSorting.quickSort(a, 0, a.length), false));
+        list.add(new Sorter("Introsort", a -> IntSorting.introSort(a, 0, a.length), false));
+        list.add(new Sorter("Network introsort", a -> IntSorting.networkSort(a, 0, a.length), false));
+        list.add(new Sorter("Three-way quicksort",
+                a -> IntSorting.quickSort(a, 0, a.length, IntSorting.Partitioning.THREE_WAY), false));
+        list.add(new Sorter("Dual-pivot quicksort",
+                a -> IntSorting.quickSort(a, 0, a.length, IntSorting.Partitioning.DUAL_PIVOT), false));
+        list.add(new Sorter("Parallel quicksort", a -> IntSorting.parallelQuickSort(a, 0, a.length), false));
+        list.add(new Sorter("Parallel merge sort", a -> IntSorting.parallelMergeSort(a, 0, a.length), false));
+        list.add(new Sorter("Run merge sort", IntSorting::runMergeSort, false));
+        list.add(new Sorter("Radix sort", IntSorting::radixSort, false));
+        SortWorkspace workspace = new SortWorkspace();
+        list.add(new Sorter("Radix sort (workspace)", keys -> IntSorting.radixSort(keys, workspace), false));
+        list.add(new Sorter("Run merge sort (workspace)", keys -> IntSorting.runMergeSort(keys, workspace), false));
+        list.add(new Sorter("Parallel radix sort", IntSorting::parallelRadixSort, false));
+        list.add(new Sorter("American flag sort", IntSorting::americanFlagSort, false));
+        list.add(new Sorter("Parallel American flag sort", IntSorting::parallelAmericanFlagSort, false));
+        list.add(new Sorter("Adaptive sort", IntSorting::sort, false));
+        list.add(new Sorter("Java API Arrays.sort", Arrays::sort, false));
+        list.add(new Sorter("Java API Arrays.parallelSort", Arrays::parallelSort, false));
+        return list;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args maximal array length, number of measured runs and length of
+     *             the large parallel comparison
+     */
+    public static void main(String[] args) {
+        int maxLength = args.length > 0 ? Integer.parseInt(args[0]) : IntSorting.MAX_SIZE;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : REPETITIONS;
+        Random generator = new Random(1);
+        List<Sorter> sorters = sorters();
+        for (int n = 1000; n <= maxLength; n *= 8) {
+            for (Distribution distribution : Distribution.values()) {
+                int[] origArray = distribution.generate(n, generator);
+                System.out.println();
+                System.out.println("Length: " + n + ", distribution: " + distribution);
+                System.out.printf("%30s%11s%11s%11s%13s%13s%n",
+                        "", "min ms", "median ms", "p90 ms", "keys/us", "bytes/op");
+                for (Sorter sorter : sorters) {
+                    if (sorter.quadratic && n > QUADRATIC_LIMIT)
+                        continue;
+                    try {
+                        measure(sorter, origArray, repetitions);
+                    } catch (StackOverflowError e) {
+                        System.out.printf("%30s%11s%n", sorter.name + ": ", "stack overflow");
+                    }
+                }
+                if (distribution == Distribution.FEW_UNIQUE)
+                    partitioningWork(origArray);
+            }
+        }
+        if (args.length > 2)
+            parallelComparison(Integer.parseInt(args[2]), repetitions, generator);
+        System.out.println();
+        System.out.println("sink: " + sink);
+    }
+
+    /**
+     * Run one sorter on copies of the input and print its statistics.
+     */
+    static void measure(Sorter sorter, int[] origArray, int repetitions) {
+        for (int w = 0; w < WARMUP; w++) {
+            int[] acopy = Arrays.copyOf(origArray, origArray.length);
+            sorter.sort.accept(acopy);
+            sink += acopy[acopy.length / 2];
+        }
+        long[] times = new long[repetitions];
+        long overhead = Long.MAX_VALUE;
+        for (int k = 0; k < 3; k++) {
+            long abytes = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - abytes);
+        }
+        long allocated = 0;
+        for (int rep = 0; rep < repetitions; rep++) {
+            int[] acopy = Arrays.copyOf(origArray, origArray.length);
+            long abytes = allocatedBytes();
+            long stime = System.nanoTime();
+            sorter.sort.accept(acopy);
+            long ftime = System.nanoTime();
+            allocated += allocatedBytes() - abytes - overhead;
+            times[rep] = ftime - stime;
+            IntSorting.checkOrder(acopy);
+            sink += acopy[acopy.length / 2];
+        }
+        Arrays.sort(times);
+        long median = times[repetitions / 2];
+        // nearest rank: the smallest time not exceeded by 90 % of the runs
+        long p90 = times[(9 * repetitions + 9) / 10 - 1];
+        System.out.printf("%30s%11.3f%11.3f%11.3f%13.1f%13d%n", sorter.name + ": ",
+                times[0] / 1e6, median / 1e6, p90 / 1e6,
+                origArray.length * 1e3 / Math.max(median, 1), allocated / repetitions);
+    }
+
+    /**
+     * Compare the radix sorts with the Java API sorts on a large uniform input.
+     */
+    static void parallelComparison(int n, int repetitions, Random generator) {
+        int[] origArray = Distribution.UNIFORM.generate(n, generator);
+        System.out.println();
+        System.out.println("Length: " + n + ", distribution: UNIFORM, processors: "
+                + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%30s%11s%11s%11s%13s%13s%n",
+                "", "min ms", "median ms", "p90 ms", "keys/us", "bytes/op");
+        measure(new Sorter("Radix sort", IntSorting::radixSort, false), origArray, repetitions);
+        measure(new Sorter("Parallel radix sort", IntSorting::parallelRadixSort, false), origArray, repetitions);
+        measure(new Sorter("Java API Arrays.sort", Arrays::sort, false), origArray, repetitions);
+        measure(new Sorter("Java API Arrays.parallelSort", Arrays::parallelSort, false), origArray, repetitions);
+    }
+
+    /**
+     * Print the comparisons and swaps of the quicksort partitioning schemes on
+     * the input, counted by SortMetrics. A swap is two moves.
+     */
+    static void partitioningWork(int[] origArray) {
+        System.out.println();
+        if (!SortMetrics.ENABLED) {
+            System.out.println("Partitioning work: run with -Dh2.sortMetrics=true to count it");
+            return;
+        }
+        System.out.printf("%30s%13s%13s%11s%n", "Partitioning work", "comparisons", "swaps", "depth");
+        for (IntSorting.Partitioning partitioning : IntSorting.Partitioning.values()) {
+            int[] acopy = Arrays.copyOf(origArray, origArray.length);
+            SortMetrics.reset();
+            IntSorting.quickSort(acopy, 0, acopy.length, partitioning);
+            SortMetrics work = SortMetrics.snapshot();
+            IntSorting.checkOrder(acopy);
+            System.out.printf("%30s%13d%13d%11d%n", partitioning + ": ",
+                    work.getComparisons(), work.getMoves() / 2, work.getMaxDepth());
+        }
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or 0 when the JVM does not
+     * report it. Work done in fork-join workers is not included.
+     */
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+
+}
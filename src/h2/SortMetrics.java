@@ -0,0 +1,141 @@
+package h2;
+
+/**
+ * Work counters of the instrumented sorting methods of IntSorting (insertion
+ * sort, binary insertion sort, quicksort in every partitioning mode, introsort
+ * and its heapsort fallback, counting sort and radix sort):
+ * key comparisons, element moves, counting passes, maximal recursion depth and
+ * bytes of scratch memory allocated.
+ * <p>
+ * Counting is switched on by the system property {@code h2.sortMetrics=true}.
+ * ENABLED is a constant, so when it is false the JIT compiler removes the
+ * counting code and the sorts run at full speed. The counters are kept per
+ * thread; a snapshot describes the work of the current thread since the last
+ * reset.
+ *
+ * @since 1.8
+ */
+public final class SortMetrics {
+
+    /**
+     * whether the sorting methods count their work
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("h2.sortMetrics");
+
+    private static final ThreadLocal<Counters> COUNTERS = ThreadLocal.withInitial(Counters::new);
+
+    /**
+     * Mutable counters of one thread.
+     */
+    static final class Counters {
+
+        long comparisons;
+        long moves;
+        long passes;
+        long allocatedBytes;
+        int depth;
+        int maxDepth;
+
+        /**
+         * Enter one level of recursion.
+         */
+        void enter() {
+            if (++depth > maxDepth)
+                maxDepth = depth;
+        }
+
+        /**
+         * Leave one level of recursion.
+         */
+        void exit() {
+            depth--;
+        }
+
+        /**
+         * Count the allocation of an int array.
+         */
+        void allocate(int length) {
+            allocatedBytes += 16 + 4L * length;
+        }
+    }
+
+    /**
+     * Counters of the current thread.
+     */
+    static Counters counters() {
+        return COUNTERS.get();
+    }
+
+    /**
+     * Snapshot of the counters of the current thread.
+     *
+     * @return new snapshot
+     */
+    public static SortMetrics snapshot() {
+        Counters c = counters();
+        return new SortMetrics(c.comparisons, c.moves, c.passes, c.maxDepth, c.allocatedBytes);
+    }
+
+    /**
+     * Reset the counters of the current thread.
+     */
+    public static void reset() {
+        COUNTERS.set(new Counters());
+    }
+
+    private final long comparisons;
+    private final long moves;
+    private final long passes;
+    private final int maxDepth;
+    private final long allocatedBytes;
+
+    private SortMetrics(long comparisons, long moves, long passes, int maxDepth, long allocatedBytes) {
+        this.comparisons = comparisons;
+        this.moves = moves;
+        this.passes = passes;
+        this.maxDepth = maxDepth;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Number of key comparisons.
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Number of writes of keys into the array or a scratch buffer.
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Number of counting sort passes.
+     */
+    public long getPasses() {
+        return passes;
+    }
+
+    /**
+     * Maximal recursion depth of quicksort and introsort.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Bytes of scratch arrays allocated, including array headers.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "comparisons=" + comparisons + " moves=" + moves + " passes=" + passes
+                + " maxDepth=" + maxDepth + " allocatedBytes=" + allocatedBytes;
+    }
+
+}
@@ -0,0 +1,86 @@
+package h2;
+
+/**
+ * Reusable scratch memory of the sorting methods of IntSorting: the scratch
+ * buffer of radix sort (also the merge buffer of the natural merge sort), the
+ * frequency table and the run stack. The buffer grows to the longest array
+ * sorted with the workspace and is kept, so repeated sorts of arrays up to that
+ * length allocate nothing.
+ * <p>
+ * A workspace is not thread-safe; keep one per thread, e.g. in a ThreadLocal.
+ *
+ * @since 1.8
+ */
+public class SortWorkspace {
+
+    private int[] buffer;
+    private final int[] freq = new int[IntSorting.RADIX];
+    private IntSorting.RunMerger merger;
+
+    /**
+     * Empty workspace, growing on demand.
+     */
+    public SortWorkspace() {
+        this(0);
+    }
+
+    /**
+     * Workspace for arrays of up to the given length.
+     *
+     * @param capacity initial length of the scratch buffer
+     */
+    public SortWorkspace(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("SortWorkspace: negative capacity " + capacity);
+        buffer = new int[capacity];
+        if (SortMetrics.ENABLED) {
+            SortMetrics.Counters c = SortMetrics.counters();
+            c.allocate(IntSorting.RADIX);
+            c.allocate(capacity);
+        }
+    }
+
+    /**
+     * Current length of the scratch buffer.
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Scratch buffer of at least the given length.
+     */
+    int[] buffer(int length) {
+        if (buffer.length < length) {
+            buffer = new int[length];
+            if (SortMetrics.ENABLED)
+                SortMetrics.counters().allocate(length);
+        }
+        return buffer;
+    }
+
+    /**
+     * Keep a buffer grown by a sort for the next sorts.
+     */
+    void keep(int[] grown) {
+        if (grown.length > buffer.length)
+            buffer = grown;
+    }
+
+    /**
+     * Frequency table of RADIX elements.
+     */
+    int[] freq() {
+        return freq;
+    }
+
+    /**
+     * Reusable state of the natural merge sort.
+     */
+    IntSorting.RunMerger merger() {
+        if (merger == null)
+            merger = new IntSorting.RunMerger(buffer);
+        return merger;
+    }
+
+}
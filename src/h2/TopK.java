@@ -0,0 +1,114 @@
+package h2;
+
+import java.util.Arrays;
+
+/**
+ * Streaming accumulator of the k smallest int values seen. The values are kept
+ * in a bounded max-heap, so adding n values takes O(n log k) time in the worst
+ * case, close to O(n) when most values are rejected by comparison with the
+ * root, and O(k) memory.
+ *
+ * @since 1.8
+ */
+public class TopK {
+
+    private final int[] heap;
+    private int size;
+
+    /**
+     * Accumulator of the k smallest values.
+     *
+     * @param k number of values to keep
+     */
+    public TopK(int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("TopK: k must be positive, was " + k);
+        heap = new int[k];
+    }
+
+    /**
+     * Offer one value.
+     *
+     * @param value value to be considered
+     */
+    public void add(int value) {
+        if (size < heap.length) {
+            int k = size++;
+            while (k > 0) {
+                int parent = (k - 1) >>> 1;
+                if (heap[parent] >= value)
+                    break;
+                heap[k] = heap[parent];
+                k = parent;
+            }
+            heap[k] = value;
+        } else if (value < heap[0]) {
+            siftDown(value);
+        }
+    }
+
+    /**
+     * Offer all values of a part of the array.
+     *
+     * @param a array of values
+     * @param l starting index (included)
+     * @param r ending index (excluded)
+     */
+    public void addAll(int[] a, int l, int r) {
+        for (int i = l; i < r; i++) {
+            add(a[i]);
+        }
+    }
+
+    /**
+     * Number of values kept, at most k.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Largest of the kept values, the threshold for new values once full.
+     *
+     * @throws IllegalStateException if no values have been added
+     */
+    public int max() {
+        if (size == 0)
+            throw new IllegalStateException("TopK: no values");
+        return heap[0];
+    }
+
+    /**
+     * The kept values in ascending order.
+     */
+    public int[] toSortedArray() {
+        int[] result = Arrays.copyOf(heap, size);
+        IntSorting.introSort(result, 0, size);
+        return result;
+    }
+
+    /**
+     * Empty the accumulator.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Replace the root by the value and restore the heap.
+     */
+    private void siftDown(int value) {
+        int k = 0;
+        int child;
+        while ((child = 2 * k + 1) < size) {
+            if (child + 1 < size && heap[child] < heap[child + 1])
+                child++;
+            if (heap[child] <= value)
+                break;
+            heap[k] = heap[child];
+            k = child;
+        }
+        heap[k] = value;
+    }
+
+}
@@ -0,0 +1,368 @@
+package h3;
+
+import java.util.Arrays;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+// RPN avaldis, mis on üks kord kontrollitud ja teisendatud käskude massiiviks.
+// evaluate ei loo uusi objekte: vahetulemused on lõime korduvkasutatavas massiivis.
+// pärast JIT_THRESHOLD arvutust tõlgitakse avaldis baitkoodiks (RpnJit) ja edasi arvutab see.
+// Objekti võib kasutada mitmest lõimest korraga.
+public final class CompiledExpression {
+
+    // käskude koodid
+    static final byte PUSH = 0;
+    static final byte LOAD = 1;
+    static final byte ADD = 2;
+    static final byte SUB = 3;
+    static final byte MUL = 4;
+    static final byte DIV = 5;
+    static final byte SWAP = 6;
+    static final byte ROT = 7;
+    static final byte DUP = 8;
+    static final byte DROP = 9;
+
+    // arvutuste arv, mille järel avaldis tõlgitakse baitkoodiks, negatiivne väärtus lülitab tõlkimise välja
+    static final int JIT_THRESHOLD = Integer.getInteger("h3.jitThreshold", 10000);
+
+    // ridade arv, mida evaluateColumns töötleb korraga, üks pinu veerg mahub L1 vahemällu
+    static final int BATCH_SIZE = 1024;
+
+    // iga lõime pinu vahetulemuste jaoks, kasvab vajadusel
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[16]);
+
+    // iga lõime veergude pinu evaluateColumns jaoks, igas veerus BATCH_SIZE elementi
+    private static final ThreadLocal<long[][]> BATCH_SCRATCH = ThreadLocal.withInitial(() -> new long[0][]);
+
+    // algne avaldis veateadete jaoks
+    private final String source;
+
+    // käsud ja nende argumendid (PUSH korral arv, LOAD korral muutuja indeks)
+    private final byte[] ops;
+    private final long[] operands;
+
+    // muutujate nimed, evaluate argumendid on samas järjekorras
+    private final String[] variables;
+
+    // pinu suurim sügavus avaldise arvutamisel
+    private final int maxDepth;
+
+    // arvutuste loendur, lõimede vahel sünkroniseerimata, sest täpne väärtus pole oluline
+    private int evaluations;
+
+    // baitkoodiks tõlgitud programm või null
+    private volatile RpnJit.Program program;
+
+    // true, kui avaldis on baitkoodiks tõlkimiseks liiga pikk
+    private volatile boolean interpretedOnly;
+
+    CompiledExpression(String source, byte[] ops, long[] operands, String[] variables, int maxDepth) {
+        this.source = source;
+        this.ops = ops;
+        this.operands = operands;
+        this.variables = variables;
+        this.maxDepth = maxDepth;
+    }
+
+    // tagastab muutujate nimed evaluate argumentide järjekorras
+    public String[] variables() {
+        return variables.clone();
+    }
+
+    // tagastab muutuja indeksi evaluate argumentides või -1, kui sellist muutujat pole
+    public int variableIndex(String name) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // arvutab avaldise väärtuse, values on muutujate väärtused variables() järjekorras
+    public long evaluate(long... values) {
+        if (values.length != variables.length) {
+            throw new RuntimeException("Expected " + variables.length + " variable values for '" + source
+                    + "', got " + values.length + ".");
+        }
+        RpnJit.Program p = program;
+        if (p != null) {
+            try {
+                return p.run(values);
+            } catch (ArithmeticException e) {
+                throw divisionByZero();
+            }
+        }
+        if (JIT_THRESHOLD >= 0 && !interpretedOnly && ++evaluations >= JIT_THRESHOLD) {
+            jit();
+        }
+        long[] st = SCRATCH.get();
+        if (st.length < maxDepth) {
+            st = new long[maxDepth];
+            SCRATCH.set(st);
+        }
+        int sp = 0;
+        for (int pc = 0; pc < ops.length; pc++) {
+            switch (ops[pc]) {
+                case PUSH:
+                    st[sp++] = operands[pc];
+                    break;
+                case LOAD:
+                    st[sp++] = values[(int) operands[pc]];
+                    break;
+                case ADD:
+                    sp--;
+                    st[sp - 1] += st[sp];
+                    break;
+                case SUB:
+                    sp--;
+                    st[sp - 1] -= st[sp];
+                    break;
+                case MUL:
+                    sp--;
+                    st[sp - 1] *= st[sp];
+                    break;
+                case DIV:
+                    sp--;
+                    if (st[sp] == 0) {
+                        throw divisionByZero();
+                    }
+                    st[sp - 1] /= st[sp];
+                    break;
+                case SWAP: {
+                    long a = st[sp - 2];
+                    st[sp - 2] = st[sp - 1];
+                    st[sp - 1] = a;
+                    break;
+                }
+                case ROT: {
+                    long a = st[sp - 3];
+                    st[sp - 3] = st[sp - 2];
+                    st[sp - 2] = st[sp - 1];
+                    st[sp - 1] = a;
+                    break;
+                }
+                case DUP:
+                    st[sp] = st[sp - 1];
+                    sp++;
+                    break;
+                case DROP:
+                    sp--;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + ops[pc]);
+            }
+        }
+        return st[0];
+    }
+
+    // arvutab avaldise väärtused korraga paljudele ridadele: results[i] saab väärtuse muutujatega
+    // columns[0][i], columns[1][i], ... iga käsk on tsükkel üle BATCH_SIZE rea, SWAP, ROT ja DROP
+    // vahetavad ainult veergude viitasid. nulliga jagamisel on results osaliselt täidetud.
+    public void evaluateColumns(long[] results, long[]... columns) {
+        if (columns.length != variables.length) {
+            throw new RuntimeException("Expected " + variables.length + " variable columns for '" + source
+                    + "', got " + columns.length + ".");
+        }
+        for (long[] column : columns) {
+            if (column.length != results.length) {
+                throw new RuntimeException("Column length " + column.length + " differs from the number of results "
+                        + results.length + " for '" + source + "'.");
+            }
+        }
+        long[][] st = BATCH_SCRATCH.get();
+        if (st.length < maxDepth) {
+            st = Arrays.copyOf(st, maxDepth);
+            for (int i = 0; i < maxDepth; i++) {
+                if (st[i] == null) {
+                    st[i] = new long[BATCH_SIZE];
+                }
+            }
+            BATCH_SCRATCH.set(st);
+        }
+        for (int from = 0; from < results.length; from += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, results.length - from);
+            int sp = 0;
+            for (int pc = 0; pc < ops.length; pc++) {
+                switch (ops[pc]) {
+                    case PUSH:
+                        if (pc + 1 < ops.length && ops[pc + 1] >= ADD && ops[pc + 1] <= DIV) {
+                            // tehe konstandiga, konstanti pole vaja veeruks laiendada
+                            constantOperation(ops[++pc], st[sp - 1], operands[pc - 1], n);
+                        } else {
+                            Arrays.fill(st[sp++], 0, n, operands[pc]);
+                        }
+                        break;
+                    case LOAD:
+                        System.arraycopy(columns[(int) operands[pc]], from, st[sp++], 0, n);
+                        break;
+                    case ADD: {
+                        sp--;
+                        long[] a = st[sp - 1];
+                        long[] b = st[sp];
+                        for (int i = 0; i < n; i++) {
+                            a[i] += b[i];
+                        }
+                        break;
+                    }
+                    case SUB: {
+                        sp--;
+                        long[] a = st[sp - 1];
+                        long[] b = st[sp];
+                        for (int i = 0; i < n; i++) {
+                            a[i] -= b[i];
+                        }
+                        break;
+                    }
+                    case MUL: {
+                        sp--;
+                        long[] a = st[sp - 1];
+                        long[] b = st[sp];
+                        for (int i = 0; i < n; i++) {
+                            a[i] *= b[i];
+                        }
+                        break;
+                    }
+                    case DIV: {
+                        sp--;
+                        long[] a = st[sp - 1];
+                        long[] b = st[sp];
+                        for (int i = 0; i < n; i++) {
+                            if (b[i] == 0) {
+                                throw divisionByZero();
+                            }
+                        }
+                        for (int i = 0; i < n; i++) {
+                            a[i] /= b[i];
+                        }
+                        break;
+                    }
+                    case SWAP: {
+                        long[] a = st[sp - 2];
+                        st[sp - 2] = st[sp - 1];
+                        st[sp - 1] = a;
+                        break;
+                    }
+                    case ROT: {
+                        long[] a = st[sp - 3];
+                        st[sp - 3] = st[sp - 2];
+                        st[sp - 2] = st[sp - 1];
+                        st[sp - 1] = a;
+                        break;
+                    }
+                    case DUP:
+                        System.arraycopy(st[sp - 1], 0, st[sp], 0, n);
+                        sp++;
+                        break;
+                    case DROP:
+                        sp--;
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown opcode " + ops[pc]);
+                }
+            }
+            System.arraycopy(st[0], 0, results, from, n);
+        }
+    }
+
+    // evaluateColumns tehe, mille parem operand on konstant c
+    private void constantOperation(byte op, long[] a, long c, int n) {
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < n; i++) {
+                    a[i] += c;
+                }
+                break;
+            case SUB:
+                for (int i = 0; i < n; i++) {
+                    a[i] -= c;
+                }
+                break;
+            case MUL:
+                for (int i = 0; i < n; i++) {
+                    a[i] *= c;
+                }
+                break;
+            default:
+                if (c == 0) {
+                    throw divisionByZero();
+                }
+                for (int i = 0; i < n; i++) {
+                    a[i] /= c;
+                }
+                break;
+        }
+    }
+
+    // sama veateade nagu LongStack.interpret nulliga jagamisel
+    private RuntimeException divisionByZero() {
+        return new RuntimeException("Error in expression: '" + source
+                + "'. Error: Division by zero when processing '/' operation!");
+    }
+
+    // tõlgib avaldise kohe baitkoodiks, liiga pika avaldise korral jääb arvutama käskude massiiv
+    public synchronized CompiledExpression jit() {
+        if (program == null && !interpretedOnly) {
+            RpnJit.Program p = RpnJit.compile(ops, operands, variables.length, maxDepth);
+            if (p == null) {
+                interpretedOnly = true;
+            } else {
+                program = p;
+            }
+        }
+        return this;
+    }
+
+    // kas avaldis arvutatakse baitkoodina
+    public boolean isJitCompiled() {
+        return program != null;
+    }
+
+    // ühe muutujaga avaldis funktsioonina, mis on tõlgitud baitkoodiks, kui see on võimalik
+    public LongUnaryOperator toUnaryOperator() {
+        if (variables.length != 1) {
+            throw new RuntimeException("Expression '" + source + "' has " + variables.length
+                    + " variables, expected 1.");
+        }
+        jit();
+        RpnJit.Program p = program;
+        if (!(p instanceof LongUnaryOperator)) {
+            return x -> evaluate(x);
+        }
+        LongUnaryOperator op = (LongUnaryOperator) p;
+        return x -> {
+            try {
+                return op.applyAsLong(x);
+            } catch (ArithmeticException e) {
+                throw divisionByZero();
+            }
+        };
+    }
+
+    // kahe muutujaga avaldis funktsioonina, mis on tõlgitud baitkoodiks, kui see on võimalik
+    public LongBinaryOperator toBinaryOperator() {
+        if (variables.length != 2) {
+            throw new RuntimeException("Expression '" + source + "' has " + variables.length
+                    + " variables, expected 2.");
+        }
+        jit();
+        RpnJit.Program p = program;
+        if (!(p instanceof LongBinaryOperator)) {
+            return (x, y) -> evaluate(x, y);
+        }
+        LongBinaryOperator op = (LongBinaryOperator) p;
+        return (x, y) -> {
+            try {
+                return op.applyAsLong(x, y);
+            } catch (ArithmeticException e) {
+                throw divisionByZero();
+            }
+        };
+    }
+
+    // tagastab algse avaldise
+    @Override
+    public String toString() {
+        return source + (variables.length == 0 ? "" : " " + Arrays.toString(variables));
+    }
+}
@@ -0,0 +1,197 @@
+package h3;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+// LongStack.interpret, compile ja baitkoodiks tõlgitud avaldiste läbilaskevõime pikkadel avaldistel.
+// lõpuks võrreldakse ühe valemi arvutamist rida haaval ja veergude kaupa ning sügava pinu
+// push, clone, equals ja pop aegu LongStack massiivi ja endise LinkedList<Long> korral.
+// võrdluseks mõõdetakse ka endist lekseemide lugemist pol.trim().split("\\s+") ja matches abil.
+// iga meetodit käivitatakse enne mõõtmist mõned korrad, tulemused liidetakse sink väljale.
+// kasutamine: java -cp src h3.InterpretBenchmark [maxTokens [repetitions]]
+public class InterpretBenchmark {
+
+    // mõõtmata käivitusi enne mõõtmist
+    static final int WARMUP = 5;
+
+    // mõõdetud käivitusi vaikimisi
+    static final int REPETITIONS = 11;
+
+    // hoiab tulemusi, et arvutust ei saaks ära optimeerida
+    static volatile long sink;
+
+    // juhuslik korrektne avaldis, milles on vähemalt tokens lekseemi
+    static String expression(int tokens, Random generator) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(generator.nextInt(1000));
+        int count = 1;
+        int depth = 1;
+        while (count < tokens || depth > 1) {
+            int choice = generator.nextInt(8);
+            if (depth < 2 || (choice < 3 && count < tokens)) {
+                sb.append(' ').append(generator.nextInt(2000) - 1000);
+                depth++;
+            } else if (choice < 6 || count >= tokens) {
+                sb.append(' ').append("+-*".charAt(generator.nextInt(3)));
+                depth--;
+            } else {
+                sb.append(' ').append(choice == 6 ? "SWAP" : "DUP DROP");
+            }
+            count++;
+        }
+        return sb.toString();
+    }
+
+    // endine regulaaravaldistega lekseemide lugemine ilma arvutamiseta
+    static long splitTokens(String pol) {
+        long sum = 0;
+        for (String token : pol.trim().split("\\s+")) {
+            if (token.matches("-?\\d+")) {
+                sum += Long.parseLong(token);
+            } else if (token.matches("[+\\-*/]")) {
+                sum++;
+            }
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) {
+        int maxTokens = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : REPETITIONS;
+        Random generator = new Random(1);
+        for (int n = 1000; n <= maxTokens; n *= 8) {
+            String pol = expression(n, generator);
+            CompiledExpression compiled = LongStack.compile(pol);
+            CompiledExpression jitted = LongStack.compile(pol).jit();
+            System.out.println();
+            System.out.println("Tokens: " + n + ", characters: " + pol.length());
+            System.out.printf("%30s%11s%11s%13s%n", "", "min ms", "median ms", "tokens/us");
+            measure("split + matches (old)", InterpretBenchmark::splitTokens, pol, n, repetitions);
+            measure("interpret", LongStack::interpret, pol, n, repetitions);
+            measure("compile", s -> LongStack.compile(s).variables().length, pol, n, repetitions);
+            measure("compiled evaluate", s -> compiled.evaluate(), pol, n, repetitions);
+            if (jitted.isJitCompiled()) {
+                measure("bytecode evaluate", s -> jitted.evaluate(), pol, n, repetitions);
+            }
+        }
+        measureRows(1 << 20, repetitions, generator);
+        measureStacks(1 << 20, repetitions);
+        System.out.println();
+        System.out.println("sink: " + sink);
+    }
+
+    // ühe valemi arvutamine paljudel ridadel: rida haaval evaluate ja veergude kaupa evaluateColumns
+    static void measureRows(int rows, int repetitions, Random generator) {
+        String pol = "price qty * price qty * discount * 100 / - tax +";
+        CompiledExpression e = LongStack.compile(pol, "price", "qty", "discount", "tax");
+        long[][] columns = new long[4][rows];
+        for (long[] column : columns) {
+            for (int i = 0; i < rows; i++) {
+                column[i] = generator.nextInt(1000);
+            }
+        }
+        long[] results = new long[rows];
+        long[] values = new long[4];
+        System.out.println();
+        System.out.println("Rows: " + rows + ", expression: " + pol);
+        System.out.printf("%30s%11s%11s%13s%n", "", "min ms", "median ms", "rows/ns");
+        for (int method = 0; method < 2; method++) {
+            long[] times = new long[repetitions];
+            for (int rep = -WARMUP; rep < repetitions; rep++) {
+                long stime = System.nanoTime();
+                if (method == 0) {
+                    for (int i = 0; i < rows; i++) {
+                        for (int j = 0; j < 4; j++) {
+                            values[j] = columns[j][i];
+                        }
+                        results[i] = e.evaluate(values);
+                    }
+                } else {
+                    e.evaluateColumns(results, columns);
+                }
+                long ftime = System.nanoTime();
+                if (rep >= 0) {
+                    times[rep] = ftime - stime;
+                }
+                sink += results[rows / 2];
+            }
+            Arrays.sort(times);
+            long median = times[repetitions / 2];
+            System.out.printf("%30s%11.3f%11.3f%13.3f%n", (method == 0 ? "evaluate per row" : "evaluateColumns") + ": ",
+                    times[0] / 1e6, median / 1e6, (double) rows / Math.max(median, 1));
+        }
+    }
+
+    // sügav pinu: depth korda push, clone, equals koopiaga ja depth korda pop.
+    // endine pinu on LinkedList<Long> nagu enne massiivi kasutamist, iga element on eraldi objekt.
+    static void measureStacks(int depth, int repetitions) {
+        System.out.println();
+        System.out.println("Stack depth: " + depth + ", push + clone + equals + pop");
+        System.out.printf("%30s%11s%11s%13s%n", "", "min ms", "median ms", "elements/us");
+        for (int method = 0; method < 2; method++) {
+            long[] times = new long[repetitions];
+            for (int rep = -WARMUP; rep < repetitions; rep++) {
+                long stime = System.nanoTime();
+                long sum = 0;
+                if (method == 0) {
+                    LinkedList<Long> stack = new LinkedList<>();
+                    for (int i = 0; i < depth; i++) {
+                        stack.add((long) i);
+                    }
+                    LinkedList<Long> copy = new LinkedList<>(stack);
+                    if (stack.equals(copy)) {
+                        sum++;
+                    }
+                    while (!stack.isEmpty()) {
+                        sum += stack.removeLast();
+                    }
+                } else {
+                    LongStack stack = new LongStack();
+                    for (int i = 0; i < depth; i++) {
+                        stack.push(i);
+                    }
+                    LongStack copy;
+                    try {
+                        copy = (LongStack) stack.clone();
+                    } catch (CloneNotSupportedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    if (stack.equals(copy)) {
+                        sum++;
+                    }
+                    while (!stack.stEmpty()) {
+                        sum += stack.pop();
+                    }
+                }
+                long ftime = System.nanoTime();
+                if (rep >= 0) {
+                    times[rep] = ftime - stime;
+                }
+                sink += sum;
+            }
+            Arrays.sort(times);
+            long median = times[repetitions / 2];
+            System.out.printf("%30s%11.3f%11.3f%13.1f%n", (method == 0 ? "LinkedList<Long> (old)" : "LongStack") + ": ",
+                    times[0] / 1e6, median / 1e6, depth * 1e3 / Math.max(median, 1));
+        }
+    }
+
+    // käivitab meetodit korduvalt ja trükib aegade statistika
+    static void measure(String name, ToLongFunction<String> method, String pol, int tokens, int repetitions) {
+        for (int w = 0; w < WARMUP; w++) {
+            sink += method.applyAsLong(pol);
+        }
+        long[] times = new long[repetitions];
+        for (int rep = 0; rep < repetitions; rep++) {
+            long stime = System.nanoTime();
+            sink += method.applyAsLong(pol);
+            times[rep] = System.nanoTime() - stime;
+        }
+        Arrays.sort(times);
+        long median = times[repetitions / 2];
+        System.out.printf("%30s%11.3f%11.3f%13.1f%n", name + ": ",
+                times[0] / 1e6, median / 1e6, tokens * 1e3 / Math.max(median, 1));
+    }
+}
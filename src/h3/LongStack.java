@@ -1,32 +1,47 @@
 package h3;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 
 public class LongStack {
 
-    // pinu hoidmiseks
-    private LinkedList<Long> stack;
+    // pinu algne mahtuvus
+    private static final int INITIAL_CAPACITY = 16;
+
+    // pinu elemendid, põhjast tipuni
+    private long[] stack;
+
+    // elementide arv pinus, tipp on stack[size - 1]
+    private int size;
 
     public LongStack() {
-        stack = new LinkedList<>();
+        stack = new long[INITIAL_CAPACITY];
     }
 
     // loob koopia antud LongStack objektist
     @Override
     public Object clone() throws CloneNotSupportedException {
         LongStack clone = new LongStack();
-        clone.stack = new LinkedList<>(this.stack);
+        clone.stack = Arrays.copyOf(this.stack, Math.max(this.size, INITIAL_CAPACITY));
+        clone.size = this.size;
         return clone;
     }
 
     // kontrollib kas pinu on tühi
     public boolean stEmpty() {
-        return stack.isEmpty();
+        return size == 0;
     }
 
-    // lisab pinu tippu ehk viimaseks uue elemendi
+    // tagastab elementide arvu pinus
+    int size() {
+        return size;
+    }
+
+    // lisab pinu tippu ehk viimaseks uue elemendi, vajadusel kahekordistab massiivi
     public void push(long a) {
-        stack.add(a);
+        if (size == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * stack.length);
+        }
+        stack[size++] = a;
     }
 
     // eemaldab ja tagastab viimase elemendi pinust
@@ -34,12 +49,12 @@ public class LongStack {
         if (stEmpty()) {
             throw new RuntimeException("Error: Unable to pop from the stack! Stack is empty!");
         }
-        return stack.removeLast();
+        return stack[--size];
     }
 
     // kontrollib kas pinust on piisavalt elemente ja kui on, siis teostab tehte kahe elemndi vahel
     public void op(String s) {
-        if (stack.size() < 2) {
+        if (size < 2) {
             throw new RuntimeException("Error: Not enough elements for " + s + " operation!");
         }
         long a = pop();
@@ -70,7 +85,7 @@ public class LongStack {
         if (stEmpty()) {
             throw new RuntimeException("Error: Cant get last element! Stack is empty!");
         }
-        return stack.getLast();
+        return stack[size - 1];
     }
 
     // kontrollib kas kaks LongStack objekti on omavahel võrdsed. kontrollides ka nende pinu
@@ -79,17 +94,30 @@ public class LongStack {
         if (this == o) return true;
         if (!(o instanceof LongStack)) return false;
         LongStack other = (LongStack) o;
-        return this.stack.equals(other.stack);
+        return Arrays.equals(this.stack, 0, this.size, other.stack, 0, other.size);
+    }
+
+    // räsikood arvutatakse samadest elementidest, mida võrdleb equals
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < size; i++) {
+            h = 31 * h + Long.hashCode(stack[i]);
+        }
+        return h;
     }
 
     // tagastab pinu sisu strigina
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (Long val : stack) {
-            sb.append(val).append(" ");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(stack[i]);
         }
-        return sb.toString().trim();
+        return sb.toString();
     }
 
 //    // kontrollib avaldist ja tagastab tulemuse, kui on viga, siis viskab erindi
@@ -118,62 +146,177 @@ public class LongStack {
 //    }
 
     public static long interpret(String pol) {
-        if (pol == null || pol.trim().isEmpty()) {
+        RpnTokenizer tokens = pol == null ? null : new RpnTokenizer(pol);
+        if (tokens == null || tokens.isBlank()) {
             throw new RuntimeException("The expression is empty or missing: '" + pol + "'.");
         }
         LongStack stack = new LongStack();
-        String[] tokens = pol.trim().split("\\s+");
-        for (String token : tokens) {
-            if (token.isEmpty()) {
-                continue;
-            }
-            if (token.matches("-?\\d+")) {
-                stack.push(Long.parseLong(token));
-            } else if (token.matches("[+\\-*/]")) {
-                try {
-                    stack.op(token);
-                } catch (RuntimeException e) {
-                    throw new RuntimeException("Error in expression: '" + pol + "'. " + e.getMessage());
-                }
-            } else if (token.equals("SWAP")) {
-                if (stack.stack.size() < 2) {
-                    throw new RuntimeException("Not enough elements for SWAP: '" + pol + "'.");
+        while (tokens.next()) {
+            switch (tokens.kind()) {
+                case RpnTokenizer.NUMBER:
+                    stack.push(tokens.number());
+                    break;
+                case CompiledExpression.ADD:
+                    operation(stack, "+", pol);
+                    break;
+                case CompiledExpression.SUB:
+                    operation(stack, "-", pol);
+                    break;
+                case CompiledExpression.MUL:
+                    operation(stack, "*", pol);
+                    break;
+                case CompiledExpression.DIV:
+                    operation(stack, "/", pol);
+                    break;
+                case CompiledExpression.SWAP: {
+                    if (stack.size() < 2) {
+                        throw new RuntimeException("Not enough elements for SWAP: '" + pol + "'.");
+                    }
+                    long b = stack.pop();
+                    long a = stack.pop();
+                    stack.push(b);
+                    stack.push(a);
+                    break;
                 }
-                long b = stack.pop();
-                long a = stack.pop();
-                stack.push(b);
-                stack.push(a);
-            } else if (token.equals("ROT")) {
-                if (stack.stack.size() < 3) {
-                    throw new RuntimeException("Not enough elements for ROT: '" + pol + "'.");
+                case CompiledExpression.ROT: {
+                    if (stack.size() < 3) {
+                        throw new RuntimeException("Not enough elements for ROT: '" + pol + "'.");
+                    }
+                    long c = stack.pop();
+                    long b = stack.pop();
+                    long a = stack.pop();
+                    stack.push(b);
+                    stack.push(c);
+                    stack.push(a);
+                    break;
                 }
-                long c = stack.pop();
-                long b = stack.pop();
-                long a = stack.pop();
-                stack.push(b);
-                stack.push(c);
-                stack.push(a);
-            } else if (token.equals("DUP")) {
-                if (stack.stack.size() < 1) {
-                    throw new RuntimeException("Not enough elements for DUP: '" + pol + "'.");
-                }
-                long a = stack.tos();
-                stack.push(a);
-            } else if (token.equals("DROP")) {
-                if (stack.stack.size() < 1) {
-                    throw new RuntimeException("Not enough elements for DROP: '" + pol + "'.");
-                }
-                stack.pop();
-            } else {
-                throw new RuntimeException("Invalid term in expression: '" + pol + "'. Found: '" + token + "'.");
+                case CompiledExpression.DUP:
+                    if (stack.size() < 1) {
+                        throw new RuntimeException("Not enough elements for DUP: '" + pol + "'.");
+                    }
+                    stack.push(stack.tos());
+                    break;
+                case CompiledExpression.DROP:
+                    if (stack.size() < 1) {
+                        throw new RuntimeException("Not enough elements for DROP: '" + pol + "'.");
+                    }
+                    stack.pop();
+                    break;
+                default:
+                    throw new RuntimeException("Invalid term in expression: '" + pol + "'. Found: '" + tokens.token() + "'.");
             }
         }
-        if (stack.stack.size() > 1) {
+        if (stack.size() > 1) {
             throw new RuntimeException("The expression contains too many numbers: '" + pol + "'.");
         }
         return stack.pop();
     }
 
+    // teostab aritmeetilise tehte, veateatele lisatakse avaldis
+    private static void operation(LongStack stack, String s, String pol) {
+        try {
+            stack.op(s);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Error in expression: '" + pol + "'. " + e.getMessage());
+        }
+    }
+
+
+    // kontrollib avaldist üks kord ja teisendab selle käskude massiiviks, mida saab korduvalt arvutada.
+    // variables on avaldises lubatud muutujate nimed, nende väärtused antakse evaluate argumentidena.
+    // veateated on samad mis interpret meetodil, nulliga jagamine selgub alles arvutamisel.
+    public static CompiledExpression compile(String pol, String... variables) {
+        RpnTokenizer tokens = pol == null ? null : new RpnTokenizer(pol);
+        if (tokens == null || tokens.isBlank()) {
+            throw new RuntimeException("The expression is empty or missing: '" + pol + "'.");
+        }
+        for (String name : variables) {
+            RpnTokenizer check = new RpnTokenizer(name);
+            if (!check.next() || check.kind() != RpnTokenizer.WORD || !check.tokenEquals(name)) {
+                throw new RuntimeException("Invalid variable name: '" + name + "'.");
+            }
+        }
+        byte[] ops = new byte[16];
+        long[] operands = new long[16];
+        int count = 0;
+        int depth = 0;
+        int maxDepth = 0;
+        while (tokens.next()) {
+            byte op = tokens.kind();
+            int needed;
+            int change;
+            switch (op) {
+                case RpnTokenizer.NUMBER:
+                    needed = 0;
+                    change = 1;
+                    break;
+                case CompiledExpression.ADD:
+                case CompiledExpression.SUB:
+                case CompiledExpression.MUL:
+                case CompiledExpression.DIV:
+                    if (depth < 2) {
+                        throw new RuntimeException("Error in expression: '" + pol + "'. Error: Not enough elements for "
+                                + tokens.token() + " operation!");
+                    }
+                    needed = 2;
+                    change = -1;
+                    break;
+                case CompiledExpression.SWAP:
+                    needed = 2;
+                    change = 0;
+                    break;
+                case CompiledExpression.ROT:
+                    needed = 3;
+                    change = 0;
+                    break;
+                case CompiledExpression.DUP:
+                    needed = 1;
+                    change = 1;
+                    break;
+                case CompiledExpression.DROP:
+                    needed = 1;
+                    change = -1;
+                    break;
+                default:
+                    op = CompiledExpression.LOAD;
+                    needed = 0;
+                    change = 1;
+                    break;
+            }
+            if (depth < needed) {
+                throw new RuntimeException("Not enough elements for " + tokens.token() + ": '" + pol + "'.");
+            }
+            if (count == ops.length) {
+                ops = Arrays.copyOf(ops, 2 * count);
+                operands = Arrays.copyOf(operands, 2 * count);
+            }
+            if (op == RpnTokenizer.NUMBER) {
+                operands[count] = tokens.number();
+            } else if (op == CompiledExpression.LOAD) {
+                int index = -1;
+                for (int i = 0; i < variables.length && index < 0; i++) {
+                    if (tokens.tokenEquals(variables[i])) {
+                        index = i;
+                    }
+                }
+                if (index < 0) {
+                    throw new RuntimeException("Invalid term in expression: '" + pol + "'. Found: '" + tokens.token() + "'.");
+                }
+                operands[count] = index;
+            }
+            ops[count++] = op;
+            depth += change;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        if (depth > 1) {
+            throw new RuntimeException("The expression contains too many numbers: '" + pol + "'.");
+        }
+        if (depth == 0) {
+            throw new RuntimeException("Error: Unable to pop from the stack! Stack is empty!");
+        }
+        return new CompiledExpression(pol, Arrays.copyOf(ops, count), Arrays.copyOf(operands, count),
+                variables.clone(), maxDepth);
+    }
 
     // tagastab Lonstack objekti postfiks kujust
     private static LongStack getLongStack(String pol) {
@@ -0,0 +1,285 @@
+package h3;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.Map;
+
+// tõlgib kontrollitud RPN programmi JVM baitkoodiks ja laeb selle peidetud klassina (defineHiddenClass).
+// RPN pinu on otse JVM operandide pinu: PUSH on ldc2_w, ADD on ladd jne, SWAP on dup2_x2 pop2,
+// ROT kasutab ühte abimuutujat. Genereeritud meetodis pole hargnemisi, seega pole vaja StackMapTable atribuuti.
+// nulliga jagamisel viskab ldiv ArithmeticException, mille CompiledExpression asendab interpret veateatega.
+final class RpnJit {
+
+    // baitkoodi pikim lubatud pikkus, pikemaid meetodeid HotSpot ei kompileeri (HugeMethodLimit)
+    static final int MAX_CODE_LENGTH = 8000;
+
+    // genereeritud klassi nimi, peidetud klassi nimele lisatakse unikaalne järelliide
+    private static final String CLASS_NAME = "h3/RpnJit$Compiled";
+
+    // avaldise väärtuse arvutamine muutujate massiivist, seda liidest teostavad kõik genereeritud klassid
+    interface Program {
+        long run(long[] values);
+    }
+
+    private RpnJit() {
+    }
+
+    // genereerib ja laeb programmi, tagastab null, kui baitkood tuleks liiga pikk.
+    // ühe muutujaga avaldise programm teostab ka LongUnaryOperator liidest, kahe muutujaga LongBinaryOperator liidest.
+    static Program compile(byte[] ops, long[] operands, int variables, int maxDepth) {
+        if (variables > Short.MAX_VALUE) {
+            return null;
+        }
+        ConstantPool cp = new ConstantPool();
+        int thisClass = cp.classRef(CLASS_NAME);
+        int superClass = cp.classRef("java/lang/Object");
+        int[] interfaces;
+        if (variables == 1) {
+            interfaces = new int[] {cp.classRef("h3/RpnJit$Program"),
+                    cp.classRef("java/util/function/LongUnaryOperator")};
+        } else if (variables == 2) {
+            interfaces = new int[] {cp.classRef("h3/RpnJit$Program"),
+                    cp.classRef("java/util/function/LongBinaryOperator")};
+        } else {
+            interfaces = new int[] {cp.classRef("h3/RpnJit$Program")};
+        }
+        int code = cp.utf8("Code");
+        ByteArrayOutputStream methods = new ByteArrayOutputStream();
+        int methodCount = 2;
+
+        // konstruktor
+        ByteArrayOutputStream init = new ByteArrayOutputStream();
+        init.write(0x2a); // aload_0
+        init.write(0xb7); // invokespecial Object.<init>
+        u2(init, cp.methodRef("java/lang/Object", "<init>", "()V"));
+        init.write(0xb1); // return
+        method(methods, cp.utf8("<init>"), cp.utf8("()V"), code, 1, 1, init.toByteArray());
+
+        // run(long[]): muutujad massiivist, abimuutuja pesas 2
+        byte[] run = body(ops, operands, cp, -1, 2);
+        if (run == null) {
+            return null;
+        }
+        int maxStack = 2 * maxDepth + 2;
+        method(methods, cp.utf8("run"), cp.utf8("([J)J"), code, maxStack, 4, run);
+        if (variables == 1) {
+            // applyAsLong(long): muutuja pesas 1, abimuutuja pesas 3
+            method(methods, cp.utf8("applyAsLong"), cp.utf8("(J)J"), code, maxStack, 5,
+                    body(ops, operands, cp, 1, 3));
+            methodCount++;
+        } else if (variables == 2) {
+            // applyAsLong(long, long): muutujad pesades 1 ja 3, abimuutuja pesas 5
+            method(methods, cp.utf8("applyAsLong"), cp.utf8("(JJ)J"), code, maxStack, 7,
+                    body(ops, operands, cp, 1, 5));
+            methodCount++;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        u4(out, 0xCAFEBABE);
+        u2(out, 0);
+        u2(out, 52); // Java 8 klassifaili versioon
+        cp.write(out);
+        u2(out, 0x0031); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+        u2(out, thisClass);
+        u2(out, superClass);
+        u2(out, interfaces.length);
+        for (int i : interfaces) {
+            u2(out, i);
+        }
+        u2(out, 0); // väljad
+        u2(out, methodCount);
+        out.writeBytes(methods.toByteArray());
+        u2(out, 0); // atribuudid
+        try {
+            MethodHandles.Lookup hidden = MethodHandles.lookup().defineHiddenClass(out.toByteArray(), true);
+            return (Program) hidden.lookupClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to load the compiled expression", e);
+        }
+    }
+
+    // meetodi keha baitkood. kui firstSlot < 0, loetakse muutujad massiivist (aload_1, indeks, laload),
+    // muidu long parameetritest alates pesast firstSlot. temp on ROT abimuutuja pesa.
+    private static byte[] body(byte[] ops, long[] operands, ConstantPool cp, int firstSlot, int temp) {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        for (int pc = 0; pc < ops.length; pc++) {
+            switch (ops[pc]) {
+                case CompiledExpression.PUSH:
+                    if (operands[pc] == 0) {
+                        b.write(0x09); // lconst_0
+                    } else if (operands[pc] == 1) {
+                        b.write(0x0a); // lconst_1
+                    } else {
+                        b.write(0x14); // ldc2_w
+                        u2(b, cp.longConstant(operands[pc]));
+                    }
+                    break;
+                case CompiledExpression.LOAD: {
+                    int index = (int) operands[pc];
+                    if (firstSlot < 0) {
+                        b.write(0x2b); // aload_1
+                        if (index <= 5) {
+                            b.write(0x03 + index); // iconst_<i>
+                        } else if (index <= Byte.MAX_VALUE) {
+                            b.write(0x10); // bipush
+                            b.write(index);
+                        } else {
+                            b.write(0x11); // sipush
+                            u2(b, index);
+                        }
+                        b.write(0x2f); // laload
+                    } else {
+                        b.write(0x16); // lload
+                        b.write(firstSlot + 2 * index);
+                    }
+                    break;
+                }
+                case CompiledExpression.ADD:
+                    b.write(0x61); // ladd
+                    break;
+                case CompiledExpression.SUB:
+                    b.write(0x65); // lsub
+                    break;
+                case CompiledExpression.MUL:
+                    b.write(0x69); // lmul
+                    break;
+                case CompiledExpression.DIV:
+                    b.write(0x6d); // ldiv
+                    break;
+                case CompiledExpression.SWAP:
+                    b.write(0x5e); // dup2_x2: a b -> b a b
+                    b.write(0x58); // pop2: b a
+                    break;
+                case CompiledExpression.ROT:
+                    b.write(0x37); // lstore temp: a b
+                    b.write(temp);
+                    b.write(0x5e); // dup2_x2: b a b
+                    b.write(0x58); // pop2: b a
+                    b.write(0x16); // lload temp: b a c
+                    b.write(temp);
+                    b.write(0x5e); // dup2_x2: b c a c
+                    b.write(0x58); // pop2: b c a
+                    break;
+                case CompiledExpression.DUP:
+                    b.write(0x5c); // dup2
+                    break;
+                case CompiledExpression.DROP:
+                    b.write(0x58); // pop2
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + ops[pc]);
+            }
+            if (b.size() > MAX_CODE_LENGTH) {
+                return null;
+            }
+        }
+        b.write(0xad); // lreturn
+        return b.toByteArray();
+    }
+
+    // method_info ühe Code atribuudiga
+    private static void method(ByteArrayOutputStream out, int name, int descriptor, int code,
+                               int maxStack, int maxLocals, byte[] body) {
+        u2(out, 0x0001); // ACC_PUBLIC
+        u2(out, name);
+        u2(out, descriptor);
+        u2(out, 1);
+        u2(out, code);
+        u4(out, 12 + body.length);
+        u2(out, maxStack);
+        u2(out, maxLocals);
+        u4(out, body.length);
+        out.writeBytes(body);
+        u2(out, 0); // erindite tabel
+        u2(out, 0); // atribuudid
+    }
+
+    private static void u2(ByteArrayOutputStream out, int v) {
+        out.write(v >>> 8);
+        out.write(v);
+    }
+
+    private static void u4(ByteArrayOutputStream out, int v) {
+        u2(out, v >>> 16);
+        u2(out, v);
+    }
+
+    // klassifaili konstantide tabel, korduvad kirjed lisatakse ühe korra
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String s) {
+            Integer index = entries.get("U" + s);
+            if (index == null) {
+                bytes.write(1);
+                u2(bytes, s.length());
+                for (int i = 0; i < s.length(); i++) {
+                    bytes.write(s.charAt(i));
+                }
+                index = add("U" + s, 1);
+            }
+            return index;
+        }
+
+        int classRef(String name) {
+            Integer index = entries.get("C" + name);
+            if (index == null) {
+                int utf = utf8(name);
+                bytes.write(7);
+                u2(bytes, utf);
+                index = add("C" + name, 1);
+            }
+            return index;
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = entries.get(key);
+            if (index == null) {
+                int c = classRef(owner);
+                int n = utf8(name);
+                int d = utf8(descriptor);
+                bytes.write(12);
+                u2(bytes, n);
+                u2(bytes, d);
+                int nameAndType = add("N" + name + descriptor, 1);
+                bytes.write(10);
+                u2(bytes, c);
+                u2(bytes, nameAndType);
+                index = add(key, 1);
+            }
+            return index;
+        }
+
+        // long konstant võtab tabelis kaks kohta
+        int longConstant(long v) {
+            Integer index = entries.get("J" + v);
+            if (index == null) {
+                bytes.write(5);
+                u4(bytes, (int) (v >>> 32));
+                u4(bytes, (int) v);
+                index = add("J" + v, 2);
+            }
+            return index;
+        }
+
+        private int add(String key, int size) {
+            int index = count;
+            count += size;
+            if (count > 0xffff) {
+                throw new IllegalStateException("Constant pool overflow");
+            }
+            entries.put(key, index);
+            return index;
+        }
+
+        void write(ByteArrayOutputStream out) {
+            u2(out, count);
+            out.writeBytes(bytes.toByteArray());
+        }
+    }
+}
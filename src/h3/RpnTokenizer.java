@@ -0,0 +1,158 @@
+package h3;
+
+// RPN avaldise lekseemide lugeja, mis ei kasuta regulaaravaldisi ega loo alamsõnesid.
+// arvud loetakse otse long väärtuseks, tehted ja käsud tunnistatakse märkide kaupa.
+// eraldajad on samad mis pol.trim().split("\\s+") korral: otstest eemaldatakse märgid <= ' ',
+// avaldise sees eraldavad lekseeme tühik, \t, \n, \u000B, \f ja \r.
+final class RpnTokenizer {
+
+    // lekseemi liigid lisaks CompiledExpression käskude koodidele
+    static final byte NUMBER = CompiledExpression.PUSH;
+    static final byte WORD = -1;
+
+    private final CharSequence text;
+    private final int end;
+    private int pos;
+
+    // viimase lekseemi algus, lõpp, liik ja arvu korral väärtus
+    private int start;
+    private int stop;
+    private byte kind;
+    private long number;
+
+    RpnTokenizer(CharSequence text) {
+        this.text = text;
+        int from = 0;
+        int to = text.length();
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        this.pos = from;
+        this.end = to;
+    }
+
+    // kas avaldis on tühi või koosneb ainult tühikutest, kontrollida enne esimest next kutset
+    boolean isBlank() {
+        return pos == end;
+    }
+
+    // loeb järgmise lekseemi, tagastab false, kui avaldis on läbi
+    boolean next() {
+        while (pos < end && isSpace(text.charAt(pos))) {
+            pos++;
+        }
+        if (pos == end) {
+            return false;
+        }
+        start = pos;
+        while (pos < end && !isSpace(text.charAt(pos))) {
+            pos++;
+        }
+        stop = pos;
+        kind = classify();
+        return true;
+    }
+
+    // viimase lekseemi liik: NUMBER, WORD või CompiledExpression käsu kood
+    byte kind() {
+        return kind;
+    }
+
+    // viimase arvu väärtus
+    long number() {
+        return number;
+    }
+
+    // viimane lekseem sõnena, kasutatakse ainult veateadetes ja muutujate nimede jaoks
+    String token() {
+        return text.subSequence(start, stop).toString();
+    }
+
+    // kas viimane lekseem on antud sõne
+    boolean tokenEquals(String s) {
+        int n = stop - start;
+        if (s.length() != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (text.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // split("\\s+") eraldajad
+    private static boolean isSpace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    private byte classify() {
+        int n = stop - start;
+        char c = text.charAt(start);
+        if (n == 1) {
+            switch (c) {
+                case '+':
+                    return CompiledExpression.ADD;
+                case '-':
+                    return CompiledExpression.SUB;
+                case '*':
+                    return CompiledExpression.MUL;
+                case '/':
+                    return CompiledExpression.DIV;
+                default:
+                    break;
+            }
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            return parseNumber() ? NUMBER : WORD;
+        }
+        if (tokenEquals("SWAP")) {
+            return CompiledExpression.SWAP;
+        }
+        if (tokenEquals("ROT")) {
+            return CompiledExpression.ROT;
+        }
+        if (tokenEquals("DUP")) {
+            return CompiledExpression.DUP;
+        }
+        if (tokenEquals("DROP")) {
+            return CompiledExpression.DROP;
+        }
+        return WORD;
+    }
+
+    // loeb lekseemi kujul -?[0-9]+ arvuks, väärtus kogutakse negatiivsena, et mahuks ka Long.MIN_VALUE
+    private boolean parseNumber() {
+        int i = start;
+        boolean negative = text.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == stop) {
+            return false;
+        }
+        long result = 0;
+        boolean overflow = false;
+        for (; i < stop; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            int digit = c - '0';
+            if (result < Long.MIN_VALUE / 10 || result * 10 < Long.MIN_VALUE + digit) {
+                overflow = true;
+            }
+            result = result * 10 - digit;
+        }
+        if (overflow || (!negative && result == Long.MIN_VALUE)) {
+            // sama NumberFormatException nagu Long.parseLong korral
+            Long.parseLong(token());
+        }
+        number = negative ? result : -result;
+        return true;
+    }
+}
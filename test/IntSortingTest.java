@@ -1,8 +1,24 @@
 import static org.junit.Assert.*;
 
+import h2.ExternalIntSort;
 import h2.IntSorting;
+import h2.ObjectSorting;
+import h2.OrderReport;
+import h2.SortMetrics;
+import h2.SortWorkspace;
+import h2.TopK;
 import org.junit.Test;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /** Test class.
  * @author Jaanus
@@ -51,5 +67,659 @@ public class IntSortingTest {
       assertTrue (msg, inOrder (a));
    }
 
-}
+   @Test (timeout=2000)
+   public void testParallelRadixSort() {
+      int[] a = new int[300000];
+      Random generaator = new Random();
+      for (int i = 0; i < a.length; i++) {
+         a[i] = generaator.nextInt();
+      }
+      int[] b = Arrays.copyOf (a, a.length);
+      Arrays.sort (b);
+      ForkJoinPool pool = new ForkJoinPool (4);
+      try {
+         IntSorting.parallelRadixSort (a, pool);
+      } finally {
+         pool.shutdown();
+      }
+      assertArrayEquals ("parallel radix sort", b, a);
+   }
+
+   @Test (timeout=5000)
+   public void testConcurrentRadixSort() throws Exception {
+      final int threads = 8;
+      final int rounds = 20;
+      ExecutorService executor = Executors.newFixedThreadPool (threads);
+      try {
+         List<Future<Boolean>> results = new ArrayList<>();
+         for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            results.add (executor.submit (() -> {
+               Random generaator = new Random (seed);
+               for (int round = 0; round < rounds; round++) {
+                  int[] c = new int[5000 + generaator.nextInt (5000)];
+                  for (int i = 0; i < c.length; i++) {
+                     c[i] = generaator.nextInt (Integer.MAX_VALUE);
+                  }
+                  int[] d = Arrays.copyOf (c, c.length);
+                  Arrays.sort (d);
+                  IntSorting.radixSort (c);
+                  if (!Arrays.equals (c, d))
+                     return false;
+               }
+               return true;
+            }));
+         }
+         for (Future<Boolean> result : results) {
+            assertTrue ("concurrent radix sort corrupted the result", result.get());
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test (timeout=1000)
+   public void testRadixSortSigned() {
+      a = new int[] {5, -1, Integer.MAX_VALUE, 0, Integer.MIN_VALUE, -256, 256, -1};
+      b = Arrays.copyOf (a, a.length);
+      Arrays.sort (b);
+      msg = Arrays.toString (a);
+      IntSorting.radixSort (a);
+      assertArrayEquals (msg, b, a);
+   }
+
+   @Test (timeout=1000)
+   public void testRadixSortRandomRanges() {
+      Random generaator = new Random();
+      int[] bounds = {1, 100, 1000, 70000, Integer.MAX_VALUE};
+      for (int bound : bounds) {
+         a = new int[10000];
+         for (int i = 0; i < a.length; i++) {
+            a[i] = generaator.nextInt (bound) - bound / 2;
+         }
+         b = Arrays.copyOf (a, a.length);
+         Arrays.sort (b);
+         IntSorting.radixSort (a);
+         assertArrayEquals ("bound " + bound, b, a);
+      }
+      a = new int[10000];
+      for (int i = 0; i < a.length; i++) {
+         a[i] = generaator.nextInt();
+      }
+      b = Arrays.copyOf (a, a.length);
+      Arrays.sort (b);
+      IntSorting.radixSort (a);
+      assertArrayEquals ("full int range", b, a);
+   }
+
+   @Test (timeout=1000)
+   public void testRadixSortLong() {
+      Random generaator = new Random();
+      long[] c = new long[10000];
+      for (int i = 0; i < c.length; i++) {
+         c[i] = i % 2 == 0 ? generaator.nextLong() : generaator.nextInt (1000);
+      }
+      c[0] = Long.MIN_VALUE;
+      c[1] = Long.MAX_VALUE;
+      long[] d = Arrays.copyOf (c, c.length);
+      Arrays.sort (d);
+      IntSorting.radixSort (c);
+      assertArrayEquals ("long[] not sorted", d, c);
+   }
+
+   @Test (timeout=1000)
+   public void testRadixSortShortAndChar() {
+      Random generaator = new Random();
+      short[] c = new short[10000];
+      char[] e = new char[10000];
+      for (int i = 0; i < c.length; i++) {
+         c[i] = (short) generaator.nextInt();
+         e[i] = (char) generaator.nextInt();
+      }
+      short[] d = Arrays.copyOf (c, c.length);
+      char[] f = Arrays.copyOf (e, e.length);
+      Arrays.sort (d);
+      Arrays.sort (f);
+      IntSorting.radixSort (c);
+      IntSorting.radixSort (e);
+      assertArrayEquals ("short[] not sorted", d, c);
+      assertArrayEquals ("char[] not sorted", f, e);
+   }
+
+   @Test (timeout=1000)
+   public void testRadixSortFloatAndDouble() {
+      Random generaator = new Random();
+      float[] c = new float[10000];
+      double[] e = new double[10000];
+      for (int i = 0; i < c.length; i++) {
+         c[i] = (generaator.nextFloat() - 0.5f) * generaator.nextInt (1000);
+         e[i] = (generaator.nextDouble() - 0.5) * generaator.nextInt (1000);
+      }
+      float[] fspecial = {Float.NaN, -0.0f, 0.0f, Float.NEGATIVE_INFINITY,
+         Float.POSITIVE_INFINITY, Float.MIN_VALUE, -Float.MAX_VALUE};
+      double[] dspecial = {Double.NaN, -0.0, 0.0, Double.NEGATIVE_INFINITY,
+         Double.POSITIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE};
+      System.arraycopy (fspecial, 0, c, 0, fspecial.length);
+      System.arraycopy (dspecial, 0, e, 0, dspecial.length);
+      float[] d = Arrays.copyOf (c, c.length);
+      double[] f = Arrays.copyOf (e, e.length);
+      Arrays.sort (d);
+      Arrays.sort (f);
+      IntSorting.radixSort (c);
+      IntSorting.radixSort (e);
+      assertTrue ("float[] not sorted", Arrays.equals (d, c));
+      assertTrue ("double[] not sorted", Arrays.equals (f, e));
+   }
 
+   @Test (timeout=1000)
+   public void testRadixSortIndices() {
+      a = new int[] {3, -1, 3, 0, -1, 7};
+      int[] indices = IntSorting.radixSortIndices (a);
+      assertArrayEquals ("keys must not change", new int[] {3, -1, 3, 0, -1, 7}, a);
+      assertArrayEquals ("stable permutation", new int[] {1, 4, 3, 0, 2, 5}, indices);
+   }
+
+   @Test (timeout=1000)
+   public void testRadixSortWithValues() {
+      Random generaator = new Random();
+      a = new int[10000];
+      int[] values = new int[a.length];
+      long[] payload = new long[a.length];
+      for (int i = 0; i < a.length; i++) {
+         a[i] = generaator.nextInt (500) - 250;
+         values[i] = i;
+         payload[i] = a[i] * 1000000007L + i;
+      }
+      int[] keys = Arrays.copyOf (a, a.length);
+      IntSorting.radixSort (keys, values);
+      assertTrue ("keys not sorted", inOrder (keys));
+      for (int i = 0; i < keys.length; i++) {
+         assertEquals ("value detached from key", a[values[i]], keys[i]);
+         if (i > 0 && keys[i] == keys[i - 1])
+            assertTrue ("sort not stable", values[i - 1] < values[i]);
+      }
+      keys = Arrays.copyOf (a, a.length);
+      IntSorting.radixSort (keys, payload);
+      for (int i = 0; i < keys.length; i++) {
+         assertEquals ("payload detached from key", keys[i], Math.floorDiv (payload[i], 1000000007L));
+      }
+   }
+
+   @Test (timeout=1000)
+   public void testIntroSortDistributions() {
+      int n = 200000;
+      Random generaator = new Random();
+      int[][] inputs = new int[6][n];
+      for (int i = 0; i < n; i++) {
+         inputs[0][i] = generaator.nextInt();
+         inputs[1][i] = i;
+         inputs[2][i] = n - i;
+         inputs[3][i] = i < n / 2 ? i : n - i;
+         inputs[4][i] = 7;
+         inputs[5][i] = generaator.nextInt (10);
+      }
+      for (int[] c : inputs) {
+         int[] d = Arrays.copyOf (c, c.length);
+         Arrays.sort (d);
+         IntSorting.introSort (c, 0, c.length);
+         assertArrayEquals ("introsort failed", d, c);
+      }
+   }
+
+   @Test (timeout=1000)
+   public void testIntroSortPart() {
+      a = new int[] {9, 8, 7, 6, 5, 4, 3, 2, 1, 0};
+      IntSorting.introSort (a, 2, 7);
+      assertArrayEquals (new int[] {9, 8, 3, 4, 5, 6, 7, 2, 1, 0}, a);
+      IntSorting.introSort (a, 4, 4);
+      b = new int[] {3, 1, 2};
+      IntSorting.binaryInsertionSort (b, 1, 3);
+      assertArrayEquals (new int[] {3, 1, 2}, b);
+   }
+
+   @Test (timeout=2000)
+   public void testQuickSortPartitionings() {
+      int n = 100000;
+      Random generaator = new Random();
+      int[][] inputs = new int[6][n];
+      for (int i = 0; i < n; i++) {
+         inputs[0][i] = generaator.nextInt();
+         inputs[1][i] = i;
+         inputs[2][i] = n - i;
+         inputs[3][i] = i < n / 2 ? i : n - i;
+         inputs[4][i] = 7;
+         inputs[5][i] = generaator.nextInt (3);
+      }
+      for (IntSorting.Partitioning partitioning : IntSorting.Partitioning.values()) {
+         for (int[] input : inputs) {
+            int[] c = Arrays.copyOf (input, input.length);
+            int[] d = Arrays.copyOf (input, input.length);
+            Arrays.sort (d, 10, n - 10);
+            IntSorting.quickSort (c, 10, n - 10, partitioning);
+            assertArrayEquals (partitioning + " failed", d, c);
+         }
+      }
+   }
+
+   @Test (timeout=2000)
+   public void testParallelQuickSortAndMergeSort() {
+      int n = 300000;
+      Random generaator = new Random();
+      int[][] inputs = new int[4][n];
+      for (int i = 0; i < n; i++) {
+         inputs[0][i] = generaator.nextInt();
+         inputs[1][i] = n - i;
+         inputs[2][i] = i < n / 2 ? i : n - i;
+         inputs[3][i] = generaator.nextInt (1000);
+      }
+      for (int[] input : inputs) {
+         int[] d = Arrays.copyOf (input, input.length);
+         Arrays.sort (d, 5, n - 5);
+         int[] c = Arrays.copyOf (input, input.length);
+         IntSorting.parallelQuickSort (c, 5, n - 5);
+         assertArrayEquals ("parallel quicksort failed", d, c);
+         c = Arrays.copyOf (input, input.length);
+         IntSorting.parallelMergeSort (c, 5, n - 5);
+         assertArrayEquals ("parallel merge sort failed", d, c);
+         d = Arrays.copyOf (input, input.length);
+         Arrays.sort (d, n / 2, n / 2 + 40000);
+         c = Arrays.copyOf (input, input.length);
+         IntSorting.parallelMergeSort (c, n / 2, n / 2 + 40000);
+         assertArrayEquals ("parallel merge sort of a part failed", d, c);
+      }
+   }
+
+   @Test (timeout=1000)
+   public void testAdaptiveSort() {
+      Random generaator = new Random();
+      int n = 100000;
+      int[][] inputs = new int[6][];
+      inputs[0] = new int[n];
+      inputs[1] = new int[n];
+      inputs[2] = new int[n];
+      inputs[3] = new int[] {3, 1, 2};
+      inputs[4] = new int[n];
+      inputs[5] = new int[5000];
+      for (int i = 0; i < n; i++) {
+         inputs[0][i] = i;
+         inputs[1][i] = n - i;
+         inputs[2][i] = i % 1000 == 0 ? -i : i;
+         inputs[4][i] = generaator.nextInt();
+      }
+      for (int i = 0; i < inputs[5].length; i++) {
+         inputs[5][i] = generaator.nextInt (1000);
+      }
+      IntSorting.Strategy[] expected = {IntSorting.Strategy.ALREADY_SORTED,
+         IntSorting.Strategy.REVERSED, IntSorting.Strategy.RUN_MERGE,
+         IntSorting.Strategy.INSERTION, IntSorting.Strategy.RADIX,
+         IntSorting.Strategy.RADIX};
+      for (int k = 0; k < inputs.length; k++) {
+         int[] d = Arrays.copyOf (inputs[k], inputs[k].length);
+         Arrays.sort (d);
+         long before = IntSorting.strategyCounts().get (expected[k]);
+         assertEquals ("strategy for input " + k, expected[k], IntSorting.sort (inputs[k]));
+         assertArrayEquals ("adaptive sort failed for input " + k, d, inputs[k]);
+         assertTrue ("strategy not counted", IntSorting.strategyCounts().get (expected[k]) > before);
+      }
+      int[] c = new int[1000];
+      for (int i = 0; i < c.length; i++) {
+         c[i] = generaator.nextInt();
+      }
+      assertEquals (IntSorting.Strategy.INTROSORT, IntSorting.sort (c));
+      assertTrue ("introsort failed", inOrder (c));
+   }
+
+   @Test (timeout=5000)
+   public void testExternalSort() throws Exception {
+      Path dir = Files.createTempDirectory ("intsorttest");
+      Path input = dir.resolve ("input.bin");
+      Path output = dir.resolve ("output.bin");
+      try {
+         Random generaator = new Random();
+         for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (int limit : new int[] {8192, 16384}) {
+               a = new int[50000];
+               for (int i = 0; i < a.length; i++) {
+                  a[i] = generaator.nextInt();
+               }
+               ByteBuffer bytes = ByteBuffer.allocate (a.length * 4).order (order);
+               bytes.asIntBuffer().put (a);
+               Files.write (input, bytes.array());
+               // 50000 keys in runs of limit / 2 bytes: 25 or 50 runs, merged 2 or 3 at a time
+               new ExternalIntSort (limit, dir, order).sort (input, output);
+               int[] c = new int[a.length];
+               ByteBuffer.wrap (Files.readAllBytes (output)).order (order).asIntBuffer().get (c);
+               Arrays.sort (a);
+               assertArrayEquals ("external sort failed for " + order, a, c);
+               try (DirectoryStream<Path> files = Files.newDirectoryStream (dir, "*.run")) {
+                  assertFalse ("run files must be deleted", files.iterator().hasNext());
+               }
+            }
+         }
+      } finally {
+         Files.deleteIfExists (input);
+         Files.deleteIfExists (output);
+         Files.deleteIfExists (dir);
+      }
+   }
+
+   @Test (timeout=2000)
+   public void testOffHeapSorts() {
+      Random generaator = new Random();
+      int n = 100000;
+      a = new int[n];
+      for (int i = 0; i < n; i++) {
+         a[i] = i % 3 == 0 ? generaator.nextInt() : generaator.nextInt (100);
+      }
+      b = Arrays.copyOf (a, n);
+      Arrays.sort (b, 10, n);
+      for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+         IntBuffer buffer = ByteBuffer.allocateDirect (n * 4).order (order).asIntBuffer();
+         buffer.put (a);
+         buffer.position (10);
+         IntSorting.radixSort (buffer);
+         int[] c = new int[n];
+         buffer.clear();
+         buffer.get (c);
+         assertArrayEquals ("direct radix sort failed for " + order, b, c);
+
+         buffer.clear();
+         buffer.put (a);
+         IntSorting.quickSort (buffer, 10, n);
+         buffer.clear();
+         buffer.get (c);
+         assertArrayEquals ("direct quicksort failed for " + order, b, c);
+      }
+   }
+
+   @Test (timeout=1000)
+   public void testRunMergeSort() {
+      Random generaator = new Random();
+      int n = 200000;
+      int[][] inputs = new int[5][n];
+      for (int i = 0; i < n; i++) {
+         inputs[0][i] = generaator.nextInt();
+         inputs[1][i] = i;
+         inputs[2][i] = n - i;
+         inputs[3][i] = i < n / 2 ? i : n - i;
+         inputs[4][i] = i / 1000 % 2 == 0 ? i : -i;
+      }
+      for (int k = 0; k < n / 100; k++) {
+         int i = generaator.nextInt (n);
+         inputs[1][i] = generaator.nextInt (n);
+      }
+      for (int[] c : inputs) {
+         int[] d = Arrays.copyOf (c, c.length);
+         Arrays.sort (d);
+         IntSorting.runMergeSort (c);
+         assertArrayEquals ("run merge sort failed", d, c);
+      }
+      a = new int[] {5, 4, 3, 2, 1};
+      IntSorting.runMergeSort (a, 1, 4);
+      assertArrayEquals (new int[] {5, 2, 3, 4, 1}, a);
+   }
+
+   @Test (timeout=1000)
+   public void testSelection() {
+      Random generaator = new Random();
+      int n = 100000;
+      for (int bound : new int[] {10, Integer.MAX_VALUE}) {
+         a = new int[n];
+         for (int i = 0; i < n; i++) {
+            a[i] = generaator.nextInt (bound);
+         }
+         b = Arrays.copyOf (a, n);
+         Arrays.sort (b);
+         for (int index : new int[] {0, 1, n / 3, n - 1}) {
+            int[] c = Arrays.copyOf (a, n);
+            IntSorting.nthElement (c, index);
+            assertEquals ("nthElement " + index, b[index], c[index]);
+            for (int i = 0; i < n; i++) {
+               assertTrue ("not partitioned at " + i, i < index ? c[i] <= c[index] : c[i] >= c[index]);
+            }
+         }
+         int[] c = Arrays.copyOf (a, n);
+         IntSorting.partialSort (c, 100);
+         assertArrayEquals ("partialSort", Arrays.copyOf (b, 100), Arrays.copyOf (c, 100));
+         TopK top = new TopK (100);
+         top.addAll (a, 0, n);
+         assertArrayEquals ("TopK", Arrays.copyOf (b, 100), top.toSortedArray());
+         assertEquals (b[99], top.max());
+      }
+      TopK small = new TopK (5);
+      small.add (3);
+      small.add (1);
+      assertArrayEquals (new int[] {1, 3}, small.toSortedArray());
+   }
+
+   @Test (timeout=1000)
+   public void testSortMetrics() {
+      SortMetrics.reset();
+      a = new int[] {4, 3, 2, 1};
+      IntSorting.insertionSort (a);
+      SortMetrics m = SortMetrics.snapshot();
+      if (SortMetrics.ENABLED) {
+         assertEquals ("insertion sort comparisons", 6, m.getComparisons());
+         assertEquals ("insertion sort moves", 9, m.getMoves());
+      } else {
+         assertEquals ("disabled metrics must stay zero", 0, m.getComparisons());
+      }
+      SortMetrics.reset();
+      a = new int[] {300, 2, 1};
+      IntSorting.radixSort (a);
+      m = SortMetrics.snapshot();
+      assertEquals ("radix sort passes", SortMetrics.ENABLED ? 2 : 0, m.getPasses());
+
+      Random generaator = new Random (1);
+      int[] data = new int[10000];
+      for (int i = 0; i < data.length; i++) {
+         data[i] = generaator.nextInt (100);
+      }
+      for (IntSorting.Partitioning p : IntSorting.Partitioning.values()) {
+         a = Arrays.copyOf (data, data.length);
+         SortMetrics.reset();
+         IntSorting.quickSort (a, 0, a.length, p);
+         m = SortMetrics.snapshot();
+         if (SortMetrics.ENABLED) {
+            assertTrue (p + " comparisons", m.getComparisons() > data.length);
+            assertTrue (p + " moves", m.getMoves() > 0);
+            assertTrue (p + " depth", m.getMaxDepth() > 1);
+         } else {
+            assertEquals (p + " disabled metrics must stay zero", 0, m.getComparisons() + m.getMoves());
+         }
+      }
+   }
+
+   @Test (timeout=5000)
+   public void testWorkspaceSortsDoNotAllocate() {
+      Random generaator = new Random();
+      int[] data = new int[20000];
+      for (int i = 0; i < data.length; i++) {
+         data[i] = generaator.nextInt();
+      }
+      int[] work = new int[data.length];
+      SortWorkspace workspace = new SortWorkspace();
+      for (int round = 0; round < 50; round++) {
+         System.arraycopy (data, 0, work, 0, data.length);
+         IntSorting.radixSort (work, workspace);
+         System.arraycopy (data, 0, work, 0, data.length);
+         IntSorting.runMergeSort (work, workspace);
+      }
+      assertTrue ("workspace must grow to the array length", workspace.capacity() >= data.length);
+      java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+      if (!(bean instanceof com.sun.management.ThreadMXBean))
+         return;
+      com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+      long id = Thread.currentThread().getId();
+      long before = sunBean.getThreadAllocatedBytes (id);
+      for (int round = 0; round < 20; round++) {
+         System.arraycopy (data, 0, work, 0, data.length);
+         IntSorting.radixSort (work, workspace);
+         System.arraycopy (data, 0, work, 0, data.length);
+         IntSorting.runMergeSort (work, workspace);
+      }
+      long allocated = sunBean.getThreadAllocatedBytes (id) - before;
+      assertTrue ("steady-state sorts allocated " + allocated + " bytes", allocated < 4096);
+      int[] expected = Arrays.copyOf (data, data.length);
+      Arrays.sort (expected);
+      assertArrayEquals (expected, work);
+   }
+
+   @Test (timeout=2000)
+   public void testAmericanFlagSort() {
+      Random generaator = new Random();
+      int n = 200000;
+      int[][] inputs = new int[5][n];
+      for (int i = 0; i < n; i++) {
+         inputs[0][i] = generaator.nextInt();
+         inputs[1][i] = generaator.nextInt (1000);
+         inputs[2][i] = generaator.nextInt (70000) - 35000;
+         inputs[3][i] = n - i;
+         inputs[4][i] = (generaator.nextInt (4) << 24) | 5;
+      }
+      for (int[] input : inputs) {
+         int[] d = Arrays.copyOf (input, n);
+         Arrays.sort (d, 3, n);
+         int[] c = Arrays.copyOf (input, n);
+         IntSorting.americanFlagSort (c, 3, n);
+         assertArrayEquals ("American flag sort failed", d, c);
+         Arrays.sort (d);
+         c = Arrays.copyOf (input, n);
+         IntSorting.parallelAmericanFlagSort (c);
+         assertArrayEquals ("parallel American flag sort failed", d, c);
+      }
+   }
+
+   @Test (timeout=1000)
+   public void testNetworkSort() {
+      Random generaator = new Random();
+      for (int n = 0; n <= 40; n++) {
+         for (int round = 0; round < 50; round++) {
+            a = new int[n];
+            for (int i = 0; i < n; i++) {
+               a[i] = round % 2 == 0 ? generaator.nextInt() : generaator.nextInt (4);
+            }
+            b = Arrays.copyOf (a, n);
+            Arrays.sort (b);
+            IntSorting.networkSort (a, 0, n);
+            assertArrayEquals ("network sort failed for length " + n, b, a);
+         }
+      }
+      a = new int[100000];
+      for (int i = 0; i < a.length; i++) {
+         a[i] = generaator.nextInt();
+      }
+      a[0] = Integer.MAX_VALUE;
+      IntSorting.networkSort (a, 0, a.length);
+      assertTrue ("network sort failed", inOrder (a));
+      for (int n = 0; n <= 16; n++) {
+         a = new int[n + 6];
+         for (int i = 0; i < a.length; i++) {
+            a[i] = generaator.nextInt (10);
+         }
+         b = Arrays.copyOf (a, a.length);
+         Arrays.sort (b, 3, 3 + n);
+         IntSorting.networkSort (a, 3, 3 + n);
+         assertArrayEquals ("network sort must stay inside the part, length " + n, b, a);
+      }
+   }
+
+   @Test (timeout=2000)
+   public void testObjectSorting() {
+      Random generaator = new Random();
+      int n = 50000;
+      long[][] records = new long[n][];
+      for (int i = 0; i < n; i++) {
+         records[i] = new long[] {generaator.nextInt (1000) - 500, i, generaator.nextLong()};
+      }
+      Comparator<long[]> byFirst = Comparator.comparingLong (r -> r[0]);
+      long[][] expected = Arrays.copyOf (records, n);
+      Arrays.sort (expected, byFirst);
+
+      long[][] c = Arrays.copyOf (records, n);
+      ObjectSorting.quickSort (c, 0, n, byFirst);
+      for (int i = 1; i < n; i++) {
+         assertTrue ("quickSort failed", c[i - 1][0] <= c[i][0]);
+      }
+      c = Arrays.copyOf (records, n);
+      ObjectSorting.mergeSort (c, byFirst);
+      assertArrayEquals ("mergeSort must be stable", expected, c);
+      c = Arrays.copyOf (records, n);
+      ObjectSorting.radixSortByInt (c, r -> (int) r[0]);
+      assertArrayEquals ("radixSortByInt must be stable", expected, c);
+      c = Arrays.copyOf (records, n);
+      ObjectSorting.radixSortByLong (c, r -> r[0]);
+      assertArrayEquals ("radixSortByLong must be stable", expected, c);
+
+      Arrays.sort (expected, Comparator.comparingLong (r -> r[2]));
+      c = Arrays.copyOf (records, n);
+      ObjectSorting.radixSortByLong (c, r -> r[2]);
+      assertArrayEquals ("radixSortByLong failed on full range", expected, c);
+   }
+
+   @Test (timeout=2000)
+   public void testVerifyAndRepairOrder() {
+      a = new int[] {1, 2, 5, 3, 4, 0};
+      OrderReport report = IntSorting.verifyOrder (a);
+      assertFalse (report.isSorted());
+      assertEquals ("descents", 2, report.getDescents());
+      assertEquals ("runs", 3, report.getRuns());
+      assertEquals ("first violation", 2, report.getFirstViolation());
+      assertEquals (2, IntSorting.repairOrder (a));
+      assertArrayEquals (new int[] {0, 1, 2, 3, 4, 5}, a);
+      assertTrue (IntSorting.verifyOrder (a).isSorted());
+      assertEquals (-1, IntSorting.verifyOrder (a).getFirstViolation());
+      assertEquals (0, IntSorting.verifyOrder (new int[0]).getRuns());
+
+      Random generaator = new Random();
+      int n = 300000;
+      a = new int[n];
+      for (int i = 0; i < n; i++) {
+         a[i] = 3 * i;
+      }
+      for (int k = 0; k < 200; k++) {
+         a[generaator.nextInt (n)] = generaator.nextInt (3 * n);
+      }
+      b = Arrays.copyOf (a, n);
+      Arrays.sort (b);
+      report = IntSorting.verifyOrder (a);
+      int first = -1;
+      long descents = 0;
+      for (int i = 0; i < n - 1; i++) {
+         if (a[i] > a[i + 1] && descents++ == 0)
+            first = i;
+      }
+      assertEquals ("parallel descents", descents, report.getDescents());
+      assertEquals ("parallel first violation", first, report.getFirstViolation());
+      assertTrue (IntSorting.repairOrder (a) > 0);
+      assertArrayEquals ("repair failed", b, a);
+
+      for (int i = 0; i < n; i++) {
+         a[i] = generaator.nextInt();
+      }
+      b = Arrays.copyOf (a, n);
+      Arrays.sort (b);
+      assertEquals ("disordered input is fully sorted", -1, IntSorting.repairOrder (a));
+      assertArrayEquals (b, a);
+
+      // every 65th element is a new minimum: few descents, but each window
+      // would reach back over the whole sorted prefix
+      n = 1000000;
+      a = new int[n];
+      int minimum = 0;
+      for (int i = 0; i < n; i++) {
+         a[i] = i % 65 == 64 ? --minimum : i;
+      }
+      b = Arrays.copyOf (a, n);
+      Arrays.sort (b);
+      report = IntSorting.verifyOrder (a);
+      assertTrue ("few descents", report.getDescents() <= n / 64);
+      long start = System.nanoTime();
+      int windows = IntSorting.repairOrder (a);
+      long time = System.nanoTime() - start;
+      assertArrayEquals ("adversarial repair failed", b, a);
+      assertTrue ("window work is bounded", windows > 0 && windows < report.getDescents());
+      assertTrue ("adversarial repair too slow: " + time / 1000000 + " ms", time < 2000000000L);
+   }
+
+}
@@ -1,8 +1,13 @@
 import static org.junit.Assert.*;
 
+import h3.CompiledExpression;
 import h3.LongStack;
 import org.junit.Test;
 
+import java.util.Random;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
 /**
  * Testklass.
  *
@@ -322,5 +327,170 @@ public class LongStackTest {
         LongStack.interpret(s);
     }
 
-}
+    @Test(timeout = 1000)
+    public void testDeepStack() {
+        LongStack m = new LongStack();
+        for (long i = 0; i < 100000; i++) {
+            m.push(i);
+        }
+        LongStack m2 = null;
+        try {
+            m2 = (LongStack) m.clone();
+        } catch (CloneNotSupportedException e) {
+        }
+        assertEquals("deep clone must be equal;", m, m2);
+        assertEquals("equal stacks must have equal hash codes;", m.hashCode(), m2.hashCode());
+        for (long i = 99999; i >= 0; i--) {
+            assertEquals("LIFO order must hold on a deep stack;", i, m.pop());
+        }
+        assertTrue("stack must be empty after popping all;", m.stEmpty());
+        assertFalse("clone must be independent;", m.equals(m2));
+        m.push(-8);
+        m.push(7);
+        assertEquals("-8 7", m.toString());
+    }
+
+    @Test(timeout = 1000)
+    public void testCompile() {
+        String[] expressions = {"1", "2 5 -", "35 10 -3 + /", "1 -10 4 8 3 - + * +",
+                "2 5 SWAP -", "2 5 9 ROT - +", "3 DUP *", "3 7 DROP",
+                "-3 -5 -7 ROT - SWAP DUP * +", "9 11 17 DUP ROT - SWAP DROP -"};
+        for (String s : expressions) {
+            CompiledExpression e = LongStack.compile(s);
+            assertEquals("expression: " + s, LongStack.interpret(s), e.evaluate());
+            assertEquals("repeated evaluation: " + s, LongStack.interpret(s), e.evaluate());
+        }
+        CompiledExpression price = LongStack.compile("qty unit * discount -", "qty", "unit", "discount");
+        assertArrayEquals(new String[] {"qty", "unit", "discount"}, price.variables());
+        assertEquals(1, price.variableIndex("unit"));
+        assertEquals(-1, price.variableIndex("tax"));
+        assertEquals(27, price.evaluate(3, 10, 3));
+        assertEquals(100, price.evaluate(10, 10, 0));
+        assertEquals("variable used more than once", 49,
+                LongStack.compile("x DUP * x - x +", "x").evaluate(7));
+    }
+
+    @Test(timeout = 1000)
+    public void testCompileErrors() {
+        String[] invalid = {"", "35 10 -3 + / 2", "35 10 -3 + x 2", "35 10 + -", "2 SWAP", "2 9 ROT",
+                "DUP", "DROP", "3 DROP"};
+        for (String s : invalid) {
+            String interpretMessage = null;
+            try {
+                LongStack.interpret(s);
+            } catch (RuntimeException e) {
+                interpretMessage = e.getMessage();
+            }
+            try {
+                LongStack.compile(s);
+                fail("compile must reject: " + s);
+            } catch (RuntimeException e) {
+                assertEquals("same message as interpret: " + s, interpretMessage, e.getMessage());
+            }
+        }
+        CompiledExpression e = LongStack.compile("x 0 /", "x");
+        try {
+            e.evaluate(5);
+            fail("division by zero must be reported at evaluation");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().contains("Division by zero"));
+        }
+        try {
+            e.evaluate();
+            fail("missing variable value must be reported");
+        } catch (RuntimeException ex) {
+            assertNotNull(ex.getMessage());
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void testScannerEdgeCases() {
+        assertEquals(7, LongStack.interpret("\t3\n4\r\n+ \f"));
+        assertEquals(Long.MIN_VALUE, LongStack.interpret("-9223372036854775808"));
+        assertEquals(Long.MAX_VALUE, LongStack.interpret("9223372036854775807 0 +"));
+        assertEquals(-1, LongStack.interpret("-0 1 -"));
+        String[] invalid = {"1 --1 +", "1 1a +", "1 + 2", "2 3 +-", "2 dup *", "1 2 \u00a0 +"};
+        for (String s : invalid) {
+            try {
+                LongStack.interpret(s);
+                fail("expression must be rejected: " + s);
+            } catch (RuntimeException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+        try {
+            LongStack.interpret("9223372036854775808");
+            fail("number overflow must be reported");
+        } catch (NumberFormatException e) {
+            assertEquals("For input string: \"9223372036854775808\"", e.getMessage());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testJit() {
+        String[] expressions = {"1", "2 5 -", "35 10 -3 + /", "1 -10 4 8 3 - + * +",
+                "2 5 SWAP -", "2 5 9 ROT - +", "3 DUP *", "3 7 DROP", "-9223372036854775808 -1 /",
+                "-3 -5 -7 ROT - SWAP DUP * +", "9 11 17 DUP ROT - SWAP DROP -"};
+        for (String s : expressions) {
+            CompiledExpression e = LongStack.compile(s).jit();
+            assertTrue("bytecode: " + s, e.isJitCompiled());
+            assertEquals("expression: " + s, LongStack.interpret(s), e.evaluate());
+        }
+        LongUnaryOperator square = LongStack.compile("1 x DUP * x - +", "x").toUnaryOperator();
+        for (long x = -50; x <= 50; x++) {
+            assertEquals(x * x - x + 1, square.applyAsLong(x));
+        }
+        LongBinaryOperator mix = LongStack.compile("y x 7 ROT / -", "x", "y").toBinaryOperator();
+        assertEquals(5 - 7 / 3, mix.applyAsLong(5, 3));
+        try {
+            mix.applyAsLong(1, 0);
+            fail("division by zero must be reported");
+        } catch (RuntimeException ex) {
+            assertEquals("Error in expression: 'y x 7 ROT / -'. Error: Division by zero when processing '/' operation!",
+                    ex.getMessage());
+        }
+        CompiledExpression hot = LongStack.compile("a b c * +", "a", "b", "c");
+        for (int i = 0; i < 20000; i++) {
+            assertEquals(i + 2L * i, hot.evaluate(i, 2, i));
+        }
+        assertTrue("promoted after repeated evaluation", hot.isJitCompiled());
+    }
+
+    @Test(timeout = 5000)
+    public void testEvaluateColumns() {
+        CompiledExpression e = LongStack.compile("price qty * DUP discount * 100 / - price SWAP 3 ROT + SWAP -",
+                "price", "qty", "discount");
+        int rows = 3000;
+        long[] price = new long[rows];
+        long[] qty = new long[rows];
+        long[] discount = new long[rows];
+        Random generator = new Random(1);
+        for (int i = 0; i < rows; i++) {
+            price[i] = generator.nextInt(10000) - 5000;
+            qty[i] = generator.nextInt(100);
+            discount[i] = generator.nextInt(50);
+        }
+        long[] results = new long[rows];
+        e.evaluateColumns(results, price, qty, discount);
+        for (int i = 0; i < rows; i++) {
+            assertEquals("row " + i, e.evaluate(price[i], qty[i], discount[i]), results[i]);
+        }
+        long[] empty = new long[0];
+        e.evaluateColumns(empty, empty, empty, empty);
+        try {
+            e.evaluateColumns(results, price, qty);
+            fail("missing column must be reported");
+        } catch (RuntimeException ex) {
+            assertNotNull(ex.getMessage());
+        }
+        for (String s : new String[] {"x 0 /", "100 x /"}) {
+            try {
+                LongStack.compile(s, "x").evaluateColumns(new long[3], new long[] {1, 0, 2});
+                fail("division by zero must be reported: " + s);
+            } catch (RuntimeException ex) {
+                assertTrue(ex.getMessage().contains("Division by zero"));
+            }
+        }
+    }
 
+}